@@ -0,0 +1,67 @@
+package com.ivanka.audioeditor.client.audio;
+
+// Adds one track's block into a mix with its fader, gain envelope and pan applied. When none of them
+// moves across the block the whole thing is two scaled adds, exactly as for a static mix; otherwise the
+// envelopes are filled into two ramp buffers once per block and folded into the left/right gains.
+// Pan is a balance law: the centre leaves both sides at unity and moving away only attenuates.
+final class AutomationRamps {
+
+    private AutomationRamps() {}
+
+    // ramps is float[2][>= n] scratch; the fader ramps linearly from faderFrom to faderTo over the block
+    static void mixInto(SampleKernels kernels, float[][] out, int outOff, float[][] src, int n, long frame,
+                        float faderFrom, float faderTo, Envelope gain, Envelope pan, float[][] ramps) {
+        boolean gainFlat = gain.isFlat(frame, n);
+        boolean panFlat = pan.isFlat(frame, n);
+
+        if (faderFrom == faderTo && gainFlat && panFlat) {
+            float g = faderTo * gain.valueAt(frame);
+            float p = pan.valueAt(frame);
+            mulAddAt(kernels, out[0], outOff, src[0], g * Math.min(1f, 1f - p), n);
+            mulAddAt(kernels, out[1], outOff, src[1], g * Math.min(1f, 1f + p), n);
+            return;
+        }
+
+        float[] g = ramps[0];
+        float[] p = ramps[1];
+        gain.fill(frame, g, n);
+        if (faderFrom != faderTo) {
+            // linear ramp over the block so a fader move or toggle does not click
+            float step = (faderTo - faderFrom) / n;
+            for (int i = 0; i < n; i++) g[i] *= faderFrom + step * i;
+        } else if (faderTo != 1f) {
+            kernels.scale(g, faderTo, n);
+        }
+
+        // from here on p holds the right-channel gain and g the left
+        if (panFlat) {
+            float pv = pan.valueAt(frame);
+            System.arraycopy(g, 0, p, 0, n);
+            kernels.scale(g, Math.min(1f, 1f - pv), n);
+            kernels.scale(p, Math.min(1f, 1f + pv), n);
+        } else {
+            pan.fill(frame, p, n);
+            for (int i = 0; i < n; i++) {
+                float pi = p[i];
+                p[i] = g[i] * Math.min(1f, 1f + pi);
+                g[i] = g[i] * Math.min(1f, 1f - pi);
+            }
+        }
+
+        mulAddAt(out[0], outOff, src[0], g, n);
+        mulAddAt(out[1], outOff, src[1], p, n);
+    }
+
+    private static void mulAddAt(float[] dst, int dstOff, float[] src, float[] gain, int n) {
+        for (int i = 0; i < n; i++) dst[dstOff + i] += src[i] * gain[i];
+    }
+
+    private static void mulAddAt(SampleKernels kernels, float[] dst, int dstOff, float[] src, float gain, int n) {
+        if (gain == 0f) return;
+        if (dstOff == 0) {
+            kernels.mulAdd(dst, src, gain, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) dst[dstOff + i] += src[i] * gain;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ivanka.audioeditor.client.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Block-sized scratch buffers shared by playback, export and import. Acquire in a try block and release
+// in finally; a buffer that is not released is simply collected, and a full pool drops the returned one.
+public final class BufferPool {
+
+    public static final int BLOCK_FRAMES = ProjectMixer.BLOCK_FRAMES;
+    public static final int BLOCK_BYTES = BLOCK_FRAMES * 4;
+    private static final int MAX_POOLED = 16;
+
+    private static final ArrayBlockingQueue<float[][]> SAMPLES = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final ArrayBlockingQueue<byte[]> BYTES = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final ArrayBlockingQueue<ByteBuffer> DIRECT = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private BufferPool() {}
+
+    // float[2][BLOCK_FRAMES]; contents are whatever the previous user left
+    public static float[][] samples() {
+        float[][] b = SAMPLES.poll();
+        return b != null ? b : new float[2][BLOCK_FRAMES];
+    }
+
+    public static void release(float[][] block) {
+        if (block != null && block.length == 2 && block[0].length == BLOCK_FRAMES) SAMPLES.offer(block);
+    }
+
+    // one block of 16-bit stereo PCM
+    public static byte[] bytes() {
+        byte[] b = BYTES.poll();
+        return b != null ? b : new byte[BLOCK_BYTES];
+    }
+
+    public static void release(byte[] bytes) {
+        if (bytes != null && bytes.length == BLOCK_BYTES) BYTES.offer(bytes);
+    }
+
+    // cleared little-endian direct buffer of BLOCK_BYTES, for channel writes without a heap copy
+    public static ByteBuffer direct() {
+        ByteBuffer b = DIRECT.poll();
+        if (b == null) b = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        b.clear();
+        return b;
+    }
+
+    public static void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect() && buffer.capacity() == BLOCK_BYTES) DIRECT.offer(buffer);
+    }
+}
@@ -0,0 +1,212 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.common.dto.AutomationPointDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable breakpoint automation curve over frames. Before the first point it holds the first value,
+// after the last it holds the last, and between two points it moves linearly or exponentially as the
+// earlier point says. A block is filled span by span with one exact value at the span start and a
+// running step or ratio after it, so evaluating a block costs one pow at most per breakpoint crossed.
+public final class Envelope {
+
+    public static final String GAIN = "gain";
+    public static final String PAN = "pan";
+
+    // exponential curves cannot reach zero; they bottom out at -80 dB
+    private static final float EXP_FLOOR = 1e-4f;
+    // ramps are built stride by stride from the values of their first stride
+    private static final int STRIDE = 64;
+
+    // value is kept as wide as the saved automation; the curve itself is evaluated in float
+    public record Point(long frame, double value, boolean exponential) {}
+
+    private final float defaultValue;
+    private final long[] frames;
+    private final float[] values;
+    private final boolean[] exponential;
+
+    private Envelope(float defaultValue, List<Point> points) {
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort((a, b) -> Long.compare(a.frame(), b.frame()));
+        this.defaultValue = defaultValue;
+        this.frames = new long[sorted.size()];
+        this.values = new float[sorted.size()];
+        this.exponential = new boolean[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            frames[i] = Math.max(0, sorted.get(i).frame());
+            values[i] = (float) sorted.get(i).value();
+            exponential[i] = sorted.get(i).exponential();
+        }
+    }
+
+    public static Envelope flat(float value) {
+        return new Envelope(value, List.of());
+    }
+
+    public static Envelope of(float defaultValue, List<Point> points) {
+        return new Envelope(defaultValue, points);
+    }
+
+    public boolean isEmpty() {
+        return frames.length == 0;
+    }
+
+    public List<Point> getPoints() {
+        List<Point> out = new ArrayList<>(frames.length);
+        for (int i = 0; i < frames.length; i++) out.add(new Point(frames[i], values[i], exponential[i]));
+        return out;
+    }
+
+    // Replaces whatever points lie in [from, to] with a ramp from v0 to v1
+    public Envelope withRamp(long from, long to, float v0, float v1, boolean exp) {
+        List<Point> next = new ArrayList<>();
+        for (Point p : getPoints()) {
+            if (p.frame() < from || p.frame() > to) next.add(p);
+        }
+        next.add(new Point(from, v0, exp));
+        next.add(new Point(to, v1, false));
+        return new Envelope(defaultValue, next);
+    }
+
+    public Envelope cleared() {
+        return isEmpty() ? this : flat(defaultValue);
+    }
+
+    public float valueAt(long frame) {
+        int n = frames.length;
+        if (n == 0) return defaultValue;
+        if (frame >= frames[n - 1]) return values[n - 1];
+        if (frame < frames[0]) return values[0];
+        int k = segmentAt(frame);
+        return curveStart(k, frame);
+    }
+
+    // True when the curve does not move over [from, from + n)
+    public boolean isFlat(long from, int n) {
+        int count = frames.length;
+        if (count == 0) return true;
+        long to = from + n;
+        if (to <= frames[0] || from >= frames[count - 1]) return true;
+        if (from < frames[0]) return false;
+        int k = segmentAt(from);
+        return values[k] == values[k + 1] && to <= frames[k + 1];
+    }
+
+    // Writes the curve over [from, from + n) into out[0, n)
+    public void fill(long from, float[] out, int n) {
+        int count = frames.length;
+        if (isFlat(from, n)) {
+            Arrays.fill(out, 0, n, valueAt(from));
+            return;
+        }
+
+        int i = 0;
+        long pos = from;
+        if (pos < frames[0]) {
+            int lead = (int) Math.min(n, frames[0] - pos);
+            Arrays.fill(out, 0, lead, values[0]);
+            i = lead;
+            pos += lead;
+        }
+
+        int k = (pos >= frames[count - 1]) ? count - 1 : segmentAt(pos);
+        while (i < n) {
+            if (k >= count - 1) {
+                Arrays.fill(out, i, n, values[count - 1]);
+                return;
+            }
+            long end = frames[k + 1];
+            int len = (int) Math.min(n - i, end - pos);
+            if (len > 0) rampSegment(k, pos, out, i, len);
+            i += len;
+            pos += len;
+            k++;
+        }
+    }
+
+    private void rampSegment(int k, long pos, float[] out, int off, int len) {
+        double span = frames[k + 1] - frames[k];
+        float v0 = values[k], v1 = values[k + 1];
+        if (v0 == v1) {
+            Arrays.fill(out, off, off + len, v0);
+            return;
+        }
+
+        // only the first stride is computed sample by sample; every later stride is that stride
+        // shifted or scaled by a constant, a loop with no dependency between iterations that the
+        // JIT can vectorise
+        float v = curveStart(k, pos);
+        if (isExponential(k)) {
+            double ratio = Math.pow(Math.max(v1, EXP_FLOOR) / Math.max(v0, EXP_FLOOR), 1.0 / span);
+            int head = Math.min(len, STRIDE);
+            double g = v;
+            for (int i = 0; i < head; i++) {
+                out[off + i] = (float) g;
+                g *= ratio;
+            }
+            double strideRatio = g / v;
+            double scale = strideRatio;
+            for (int c = head; c < len; c += STRIDE) {
+                int m = Math.min(STRIDE, len - c);
+                float f = (float) scale;
+                for (int i = 0; i < m; i++) out[off + c + i] = out[off + i] * f;
+                scale *= strideRatio;
+            }
+        } else {
+            double step = (v1 - v0) / span;
+            int head = Math.min(len, STRIDE);
+            for (int i = 0; i < head; i++) out[off + i] = (float) (v + step * i);
+            for (int c = head; c < len; c += STRIDE) {
+                int m = Math.min(STRIDE, len - c);
+                float shift = (float) (step * c);
+                for (int i = 0; i < m; i++) out[off + c + i] = out[off + i] + shift;
+            }
+        }
+    }
+
+    private float curveStart(int k, long pos) {
+        double t = (double) (pos - frames[k]) / (frames[k + 1] - frames[k]);
+        float v0 = values[k], v1 = values[k + 1];
+        if (isExponential(k)) {
+            double a = Math.max(v0, EXP_FLOOR), b = Math.max(v1, EXP_FLOOR);
+            return (float) (a * Math.pow(b / a, t));
+        }
+        return (float) (v0 + (v1 - v0) * t);
+    }
+
+    // exponential only makes sense between non-negative values; anything else falls back to linear
+    private boolean isExponential(int k) {
+        return exponential[k] && values[k] >= 0 && values[k + 1] >= 0;
+    }
+
+    // Index k of the last point at or before frame, for frames[0] <= frame < frames[last]
+    private int segmentAt(long frame) {
+        int k = Arrays.binarySearch(frames, frame);
+        if (k < 0) return -k - 2;
+        // several points may share a frame; the curve leaving the last of them applies
+        while (k + 1 < frames.length - 1 && frames[k + 1] == frame) k++;
+        return k;
+    }
+
+    public static Envelope fromDto(List<AutomationPointDTO> points, String lane, float defaultValue, float sampleRate) {
+        if (points == null || points.isEmpty()) return flat(defaultValue);
+        List<Point> out = new ArrayList<>();
+        for (AutomationPointDTO p : points) {
+            if (lane.equals(p.lane())) {
+                out.add(new Point(Math.round(p.timeSec() * sampleRate), p.value(), p.exponential()));
+            }
+        }
+        return new Envelope(defaultValue, out);
+    }
+
+    public List<AutomationPointDTO> toDto(String lane, float sampleRate) {
+        List<AutomationPointDTO> out = new ArrayList<>(frames.length);
+        for (int i = 0; i < frames.length; i++) {
+            out.add(new AutomationPointDTO(lane, frames[i] / (double) sampleRate, values[i], exponential[i]));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ivanka.audioeditor.client.audio;
+
+public interface FrameSource {
+
+    long getFrameLength();
+
+    int read(long fromFrame, float[][] dst, int dstOffset, int frames);
+
+    // For a thread that must not wait, such as the playback renderer: working space comes from scratch
+    // and audio that is not ready yet reads as silence instead of being computed on the spot
+    default int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return read(fromFrame, dst, dstOffset, frames);
+    }
+}
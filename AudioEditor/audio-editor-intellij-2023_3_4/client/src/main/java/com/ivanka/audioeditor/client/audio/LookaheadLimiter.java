@@ -0,0 +1,157 @@
+package com.ivanka.audioeditor.client.audio;
+
+import java.util.Arrays;
+
+// Stereo-linked look-ahead peak limiter for the end of a block render chain. The gain needed to keep
+// each sample under the ceiling is held over the look-ahead window, released exponentially and then
+// box-averaged over the same window, so the gain is already down when a peak leaves the delay line
+// and never steps. Output is delayed by getLatency() frames; memory does not depend on the input.
+// In true-peak mode the detector also checks 4x oversampled points between samples.
+public final class LookaheadLimiter {
+
+    private static final double LOOKAHEAD_SEC = 0.005;
+    private static final double RELEASE_SEC = 0.1;
+    private static final int TP_PHASES = 4;
+    private static final int TP_HALF = 4;
+    private static final float[][] TP_TABLE = truePeakTable();
+
+    private final float ceiling;
+    private final boolean truePeak;
+    private final int window;
+    private final int latency;
+    private final float release;
+
+    private final float[] minGain;
+    private final long[] minAt;
+    private int minHead, minTail;
+
+    private final float[] box;
+    private int boxPos;
+    private double boxSum;
+
+    private final float[] delayL, delayR;
+    private int delayPos;
+
+    private final float[] histL = new float[2 * TP_HALF];
+    private final float[] histR = new float[2 * TP_HALF];
+    private int histPos;
+
+    private long sampleIndex;
+    private float envelope;
+
+    public LookaheadLimiter(float sampleRate, float ceiling, boolean truePeak) {
+        this.ceiling = ceiling;
+        this.truePeak = truePeak;
+        this.window = Math.max(2, (int) Math.round(sampleRate * LOOKAHEAD_SEC));
+        this.latency = window - 1 + (truePeak ? TP_HALF - 1 : 0);
+        this.release = (float) (1 - Math.exp(-1 / (RELEASE_SEC * sampleRate)));
+        this.minGain = new float[window + 1];
+        this.minAt = new long[window + 1];
+        this.box = new float[window];
+        this.delayL = new float[latency];
+        this.delayR = new float[latency];
+        reset();
+    }
+
+    // Ceiling and true-peak mode come from -Daudioeditor.limiter.ceilingDb and -Daudioeditor.limiter.truePeak
+    public static LookaheadLimiter forOutput(float sampleRate) {
+        double db = Double.parseDouble(System.getProperty("audioeditor.limiter.ceilingDb", "-0.3"));
+        return new LookaheadLimiter(sampleRate, (float) Math.pow(10, db / 20), Boolean.getBoolean("audioeditor.limiter.truePeak"));
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    public void reset() {
+        minHead = minTail = 0;
+        Arrays.fill(box, 1f);
+        boxSum = window;
+        boxPos = 0;
+        Arrays.fill(delayL, 0f);
+        Arrays.fill(delayR, 0f);
+        delayPos = 0;
+        Arrays.fill(histL, 0f);
+        Arrays.fill(histR, 0f);
+        histPos = 0;
+        sampleIndex = 0;
+        envelope = 1f;
+    }
+
+    // In place; the block comes back delayed by getLatency() frames
+    public void process(float[][] block, int frames) {
+        float[] bl = block[0], br = block[1];
+        for (int i = 0; i < frames; i++) {
+            float l = bl[i], r = br[i];
+            float peak = truePeak ? truePeak(l, r) : Math.max(Math.abs(l), Math.abs(r));
+            float required = peak > ceiling ? ceiling / peak : 1f;
+
+            // sliding minimum of the required gain over the look-ahead window
+            while (minTail != minHead && minGain[prev(minTail)] >= required) minTail = prev(minTail);
+            minGain[minTail] = required;
+            minAt[minTail] = sampleIndex;
+            minTail = next(minTail);
+            if (minAt[minHead] <= sampleIndex - window) minHead = next(minHead);
+            float hold = minGain[minHead];
+
+            envelope = hold < envelope ? hold : envelope + (hold - envelope) * release;
+
+            boxSum += envelope - box[boxPos];
+            box[boxPos] = envelope;
+            if (++boxPos == window) boxPos = 0;
+            float gain = (float) (boxSum / window);
+
+            bl[i] = delayL[delayPos] * gain;
+            br[i] = delayR[delayPos] * gain;
+            delayL[delayPos] = l;
+            delayR[delayPos] = r;
+            if (++delayPos == latency) delayPos = 0;
+            sampleIndex++;
+        }
+    }
+
+    // Largest of the center sample (TP_HALF - 1 frames back) and the oversampled points before it
+    private float truePeak(float l, float r) {
+        int mask = histL.length - 1;
+        histL[histPos] = l;
+        histR[histPos] = r;
+        histPos = (histPos + 1) & mask;
+
+        int center = (histPos + TP_HALF) & mask;
+        float peak = Math.max(Math.abs(histL[center]), Math.abs(histR[center]));
+        for (float[] h : TP_TABLE) {
+            float il = 0f, ir = 0f;
+            for (int t = 0; t < h.length; t++) {
+                int idx = (histPos + t) & mask;
+                il += histL[idx] * h[t];
+                ir += histR[idx] * h[t];
+            }
+            peak = Math.max(peak, Math.max(Math.abs(il), Math.abs(ir)));
+        }
+        return peak;
+    }
+
+    private int next(int i) {
+        return i == minGain.length - 1 ? 0 : i + 1;
+    }
+
+    private int prev(int i) {
+        return i == 0 ? minGain.length - 1 : i - 1;
+    }
+
+    // Hann-windowed sinc interpolators for the points 1/4, 2/4 and 3/4 of the way from the sample
+    // before the center tap to the center tap
+    private static float[][] truePeakTable() {
+        float[][] table = new float[TP_PHASES - 1][2 * TP_HALF];
+        for (int p = 1; p < TP_PHASES; p++) {
+            double frac = (double) p / TP_PHASES;
+            for (int t = 0; t < 2 * TP_HALF; t++) {
+                double x = t - (TP_HALF - 1) - frac;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                double w = 0.5 + 0.5 * Math.cos(Math.PI * x / TP_HALF);
+                table[p - 1][t] = (float) (sinc * w);
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+
+// Frames [start, end) of a source prepared for loop playback. A region up to MAX_RENDER_FRAMES is
+// rendered once into memory; a longer one is streamed from the source itself, offset to the region,
+// so looping an hour of audio costs no more memory than playing it. Either way it remembers the
+// source it was made from: a track hands out a new timeline snapshot whenever its samples, clip
+// layout or clip automation change, so comparing snapshots tells whether the loop is stale.
+public final class LoopBuffer implements FrameSource {
+
+    private static final long MAX_RENDER_FRAMES = Long.getLong("audioeditor.loop.maxRenderFrames", 1L << 23);
+
+    private final FrameSource origin;
+    private final long start;
+    private final long end;
+    // null when the region is streamed from origin
+    private final HeapSampleStore samples;
+
+    private LoopBuffer(FrameSource origin, long start, long end, HeapSampleStore samples) {
+        this.origin = origin;
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+    }
+
+    public static LoopBuffer render(FrameSource origin, long start, long end) {
+        long from = Math.max(0, start);
+        long to = Math.max(from, Math.min(end, origin.getFrameLength()));
+        if (to - from > MAX_RENDER_FRAMES) return new LoopBuffer(origin, from, to, null);
+
+        HeapSampleStore.Writer out = HeapSampleStore.writer(2, false);
+        float[][] block = BufferPool.samples();
+        try {
+            for (long pos = from; pos < to; ) {
+                int want = (int) Math.min(BufferPool.BLOCK_FRAMES, to - pos);
+                int n = origin.read(pos, block, 0, want);
+                if (n <= 0) break;
+                out.write(block, 0, n);
+                pos += n;
+            }
+        } finally {
+            BufferPool.release(block);
+        }
+        return new LoopBuffer(origin, from, to, out.finish());
+    }
+
+    public boolean isCurrent(FrameSource origin, long start, long end) {
+        return this.origin == origin && this.start == Math.max(0, start)
+                && this.end == Math.max(this.start, Math.min(end, origin.getFrameLength()));
+    }
+
+    public boolean isStreamed() { return samples == null; }
+    public long getStart() { return start; }
+    public long getEnd() { return end; }
+
+    @Override
+    public long getFrameLength() {
+        return samples != null ? samples.getFrameLength() : end - start;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        if (samples != null) return samples.read(fromFrame, dst, dstOffset, frames);
+        int n = clip(fromFrame, frames);
+        return n > 0 ? origin.read(start + fromFrame, dst, dstOffset, n) : 0;
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        if (samples != null) return samples.read(fromFrame, dst, dstOffset, frames);
+        int n = clip(fromFrame, frames);
+        return n > 0 ? origin.readRealtime(start + fromFrame, dst, dstOffset, n, scratch) : 0;
+    }
+
+    // frames of a streamed read that stay inside the region
+    private int clip(long fromFrame, int frames) {
+        if (fromFrame < 0 || fromFrame >= end - start) return 0;
+        return (int) Math.min(frames, end - start - fromFrame);
+    }
+}
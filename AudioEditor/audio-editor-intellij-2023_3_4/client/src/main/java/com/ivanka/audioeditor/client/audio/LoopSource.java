@@ -0,0 +1,48 @@
+package com.ivanka.audioeditor.client.audio;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// What a looping StreamingPlayer reads from. A re-rendered LoopBuffer is queued and taken over the
+// next time playback wraps to the loop start, so an edit never cuts into the pass being heard.
+public final class LoopSource implements FrameSource {
+
+    private final AtomicReference<LoopBuffer> pending = new AtomicReference<>();
+    private volatile LoopBuffer current;
+
+    public LoopSource(LoopBuffer buffer) {
+        this.current = buffer;
+    }
+
+    public LoopBuffer getBuffer() {
+        LoopBuffer next = pending.get();
+        return next != null ? next : current;
+    }
+
+    public void queue(LoopBuffer buffer) {
+        pending.set(buffer);
+    }
+
+    @Override
+    public long getFrameLength() {
+        return current.getFrameLength();
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return take(fromFrame).read(fromFrame, dst, dstOffset, frames);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return take(fromFrame).readRealtime(fromFrame, dst, dstOffset, frames, scratch);
+    }
+
+    // the buffer to read from; a queued one takes over when playback is back at the loop start
+    private LoopBuffer take(long fromFrame) {
+        if (fromFrame == 0) {
+            LoopBuffer next = pending.getAndSet(null);
+            if (next != null) current = next;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.AudioComponent;
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.model.composite.TrackTimeline;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Export-time mixdown on a ForkJoinPool. The timeline is cut into independent blocks that are mixed
+// in parallel, and inside a block the tracks are split into groups summed concurrently. A bounded
+// window of blocks is in flight; they are limited and written in order in a single pass, so memory
+// does not grow with project length.
+public class OfflineRenderer {
+
+    public static final int RENDER_BLOCK = 1 << 15;
+    private static final int TRACKS_PER_TASK = 4;
+
+    private final List<TrackTimeline> tracks = new ArrayList<>();
+    private final float[] gains;
+    private final List<Envelope> gainEnvelopes = new ArrayList<>();
+    private final List<Envelope> panEnvelopes = new ArrayList<>();
+    private final long frameLength;
+    private final int blockCount;
+    private final SampleKernels kernels = SampleKernels.get();
+    private final ForkJoinPool pool;
+
+    // Tracks and their automation are snapshotted here; edits made while rendering do not leak into the file
+    public OfflineRenderer(AudioProject project, ForkJoinPool pool) {
+        this.pool = pool;
+        boolean anySolo = project.getChildren().stream()
+                .anyMatch(c -> c instanceof AudioTrack t && t.getControls().isSolo());
+
+        List<Float> trackGains = new ArrayList<>();
+        long len = 0;
+        for (AudioComponent c : project.getChildren()) {
+            if (!(c instanceof AudioTrack t)) continue;
+            float g = t.getControls().effectiveGain(anySolo);
+            if (g == 0f) continue;
+
+            TrackTimeline timeline = t.getTimeline();
+            if (timeline.getFrameLength() == 0) continue;
+
+            tracks.add(timeline);
+            trackGains.add(g);
+            gainEnvelopes.add(t.getControls().getGainEnvelope());
+            panEnvelopes.add(t.getControls().getPanEnvelope());
+            len = Math.max(len, timeline.getFrameLength());
+        }
+        this.gains = new float[trackGains.size()];
+        for (int i = 0; i < gains.length; i++) gains[i] = trackGains.get(i);
+        this.frameLength = len;
+        this.blockCount = (int) ((len + RENDER_BLOCK - 1) / RENDER_BLOCK);
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    // Keeps a window of blocks mixing ahead of the writer and hands them over in timeline order
+    public void render(WavStreamWriter out, LookaheadLimiter limiter) throws IOException {
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<float[][]>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        int skip = limiter.getLatency();
+
+        try {
+            while (next < blockCount && inFlight.size() < window) inFlight.add(submitBlock(next++));
+
+            for (int b = 0; b < blockCount; b++) {
+                float[][] block = inFlight.poll().join();
+                if (next < blockCount) inFlight.add(submitBlock(next++));
+                skip = writeLimited(out, limiter, block, blockFrames(b), skip);
+            }
+        } finally {
+            for (ForkJoinTask<float[][]> t : inFlight) t.cancel(true);
+        }
+
+        // push the look-ahead tail out with silence
+        float[][] tail = new float[2][limiter.getLatency()];
+        writeLimited(out, limiter, tail, tail[0].length, skip);
+    }
+
+    // The limiter delays its output, so its first `skip` frames are the priming silence
+    private static int writeLimited(WavStreamWriter out, LookaheadLimiter limiter, float[][] block, int frames, int skip)
+            throws IOException {
+        limiter.process(block, frames);
+        int s = Math.min(skip, frames);
+        out.write(block, s, frames - s);
+        return skip - s;
+    }
+
+    private ForkJoinTask<float[][]> submitBlock(int block) {
+        return pool.submit(() -> mixBlock(block));
+    }
+
+    private int blockFrames(int block) {
+        long start = (long) block * RENDER_BLOCK;
+        return (int) Math.min(RENDER_BLOCK, frameLength - start);
+    }
+
+    private float[][] mixBlock(int block) {
+        long start = (long) block * RENDER_BLOCK;
+        int frames = blockFrames(block);
+        if (tracks.isEmpty()) return new float[2][frames];
+        return new TrackGroupTask(0, tracks.size(), start, frames).compute();
+    }
+
+    // Sums tracks [from, to) over one block; splits the track range until a group is small enough.
+    // ForkJoinTask is Serializable, but these tasks only live inside one export and are never serialized
+    @SuppressWarnings("serial")
+    private final class TrackGroupTask extends RecursiveTask<float[][]> {
+        private final int from, to;
+        private final long start;
+        private final int frames;
+
+        TrackGroupTask(int from, int to, long start, int frames) {
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.frames = frames;
+        }
+
+        @Override
+        protected float[][] compute() {
+            if (to - from > TRACKS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                TrackGroupTask right = new TrackGroupTask(mid, to, start, frames);
+                right.fork();
+                float[][] left = new TrackGroupTask(from, mid, start, frames).compute();
+                float[][] r = right.join();
+                kernels.mulAdd(left[0], r[0], 1f, frames);
+                kernels.mulAdd(left[1], r[1], 1f, frames);
+                return left;
+            }
+
+            float[][] acc = new float[2][frames];
+            float[][] scratch = BufferPool.samples();
+            float[][] ramps = BufferPool.samples();
+            try {
+                for (int t = from; t < to; t++) {
+                    TrackTimeline src = tracks.get(t);
+                    float g = gains[t];
+                    for (int off = 0; off < frames; off += BufferPool.BLOCK_FRAMES) {
+                        int want = Math.min(BufferPool.BLOCK_FRAMES, frames - off);
+                        int n = src.read(start + off, scratch, 0, want);
+                        if (n <= 0) break;
+                        AutomationRamps.mixInto(kernels, acc, off, scratch, n, start + off, g, g,
+                                gainEnvelopes.get(t), panEnvelopes.get(t), ramps);
+                    }
+                }
+            } finally {
+                BufferPool.release(scratch);
+                BufferPool.release(ramps);
+            }
+            return acc;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.ivanka.audioeditor.client.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+
+// Pulls fixed-size chunks from an AudioInputStream into one reusable byte buffer and converts them
+// to the editor's stereo float layout. Mono is duplicated to both channels, channels past the second
+// are dropped. Handles 8-bit unsigned/signed, 16/24/32-bit signed integer and 32-bit float PCM.
+public class PcmDecoder {
+
+    private final AudioInputStream in;
+    private final int channels;
+    private final int frameSize;
+    private final int bytesPerSample;
+    private final boolean bigEndian;
+    private final Kind kind;
+    private final byte[] bytes;
+
+    private enum Kind { U8, S8, S16, S24, S32, F32 }
+
+    public PcmDecoder(AudioInputStream in, int chunkFrames) {
+        AudioFormat f = in.getFormat();
+        this.in = in;
+        this.channels = f.getChannels();
+        this.bytesPerSample = (f.getSampleSizeInBits() + 7) / 8;
+        this.frameSize = f.getFrameSize() > 0 ? f.getFrameSize() : bytesPerSample * channels;
+        this.bigEndian = f.isBigEndian();
+        this.kind = kindOf(f);
+        this.bytes = new byte[chunkFrames * frameSize];
+    }
+
+    // Format the decoded samples are played and exported in: source rate, 16-bit stereo
+    public static AudioFormat decodedFormat(AudioFormat source) {
+        return new AudioFormat(source.getSampleRate(), 16, 2, true, false);
+    }
+
+    // Channels the source carries, up to the two the editor keeps
+    public int getChannels() {
+        return Math.min(channels, 2);
+    }
+
+    // 8- and 16-bit integer sources survive a round trip through 16-bit storage exactly
+    public boolean fitsPcm16() {
+        return kind == Kind.U8 || kind == Kind.S8 || kind == Kind.S16;
+    }
+
+    public int getChunkFrames() {
+        return bytes.length / frameSize;
+    }
+
+    // Fills dst[0..1][offset..] with up to one chunk; returns frames decoded, -1 at end of stream
+    public int read(float[][] dst, int offset) throws IOException {
+        int max = Math.min(bytes.length, (dst[0].length - offset) * frameSize);
+        int got = in.readNBytes(bytes, 0, max);
+        int frames = got / frameSize;
+        if (frames == 0) return -1;
+
+        decodeChannel(0, dst[0], offset, frames);
+        if (channels == 1) {
+            System.arraycopy(dst[0], offset, dst[1], offset, frames);
+        } else {
+            decodeChannel(1, dst[1], offset, frames);
+        }
+        return frames;
+    }
+
+    private void decodeChannel(int ch, float[] out, int offset, int frames) {
+        int idx = ch * bytesPerSample;
+        final byte[] b = bytes;
+        switch (kind) {
+            case U8 -> {
+                for (int i = 0; i < frames; i++, idx += frameSize) out[offset + i] = ((b[idx] & 0xFF) - 128) / 128f;
+            }
+            case S8 -> {
+                for (int i = 0; i < frames; i++, idx += frameSize) out[offset + i] = b[idx] / 128f;
+            }
+            case S16 -> {
+                if (bigEndian) {
+                    for (int i = 0; i < frames; i++, idx += frameSize)
+                        out[offset + i] = (short) ((b[idx] << 8) | (b[idx + 1] & 0xFF)) / 32768f;
+                } else {
+                    for (int i = 0; i < frames; i++, idx += frameSize)
+                        out[offset + i] = (short) ((b[idx + 1] << 8) | (b[idx] & 0xFF)) / 32768f;
+                }
+            }
+            case S24 -> {
+                if (bigEndian) {
+                    for (int i = 0; i < frames; i++, idx += frameSize)
+                        out[offset + i] = ((b[idx] << 16) | ((b[idx + 1] & 0xFF) << 8) | (b[idx + 2] & 0xFF)) / 8388608f;
+                } else {
+                    for (int i = 0; i < frames; i++, idx += frameSize)
+                        out[offset + i] = ((b[idx + 2] << 16) | ((b[idx + 1] & 0xFF) << 8) | (b[idx] & 0xFF)) / 8388608f;
+                }
+            }
+            case S32 -> {
+                for (int i = 0; i < frames; i++, idx += frameSize)
+                    out[offset + i] = (float) (int32At(b, idx) / 2147483648.0);
+            }
+            case F32 -> {
+                for (int i = 0; i < frames; i++, idx += frameSize)
+                    out[offset + i] = Float.intBitsToFloat(int32At(b, idx));
+            }
+        }
+    }
+
+    private int int32At(byte[] b, int idx) {
+        return bigEndian
+                ? (b[idx] << 24) | ((b[idx + 1] & 0xFF) << 16) | ((b[idx + 2] & 0xFF) << 8) | (b[idx + 3] & 0xFF)
+                : (b[idx + 3] << 24) | ((b[idx + 2] & 0xFF) << 16) | ((b[idx + 1] & 0xFF) << 8) | (b[idx] & 0xFF);
+    }
+
+    private static Kind kindOf(AudioFormat f) {
+        AudioFormat.Encoding enc = f.getEncoding();
+        int bits = f.getSampleSizeInBits();
+        if (f.getChannels() < 1) throw new UnsupportedOperationException("No audio channels");
+
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(enc) && bits == 32) return Kind.F32;
+        if (AudioFormat.Encoding.PCM_UNSIGNED.equals(enc) && bits == 8) return Kind.U8;
+        if (AudioFormat.Encoding.PCM_SIGNED.equals(enc)) {
+            Kind k = switch (bits) {
+                case 8 -> Kind.S8;
+                case 16 -> Kind.S16;
+                case 24 -> Kind.S24;
+                case 32 -> Kind.S32;
+                default -> null;
+            };
+            if (k != null) return k;
+        }
+        throw new UnsupportedOperationException("Unsupported PCM format: " + enc + ", " + bits + "-bit");
+    }
+}
@@ -0,0 +1,95 @@
+package com.ivanka.audioeditor.client.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-producer single-consumer ring of preallocated PCM slots. The producer fills the slot returned
+// by writeSlot() and commits it; the consumer reads the oldest committed slot and releases it. Head
+// and tail are only ever advanced by their own side, so neither side locks or allocates. Each slot
+// carries the epoch it was rendered for, which lets the consumer drop audio that predates a seek.
+public class PcmRingBuffer {
+
+    private static final long PARK_NANOS = 1_000_000L;
+
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] epochs;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread producer;
+    private volatile Thread consumer;
+
+    // slotCount is rounded up to a power of two
+    public PcmRingBuffer(int slotCount, int slotBytes) {
+        int n = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.slots = new byte[n][slotBytes];
+        this.lengths = new int[n];
+        this.epochs = new long[n];
+        this.mask = n - 1;
+    }
+
+    // Producer: a free slot to fill, or null when the ring is full
+    public byte[] writeSlot() {
+        long t = tail.get();
+        if (t - head.get() > mask) return null;
+        return slots[(int) (t & mask)];
+    }
+
+    // Producer: publishes the slot from writeSlot(); zero bytes marks the end of the source
+    public void commit(int bytes, long epoch) {
+        long t = tail.get();
+        int i = (int) (t & mask);
+        lengths[i] = bytes;
+        epochs[i] = epoch;
+        tail.lazySet(t + 1);
+        LockSupport.unpark(consumer);
+    }
+
+    // Consumer: the oldest committed slot, or null when the ring is empty
+    public byte[] readSlot() {
+        long h = head.get();
+        if (h == tail.get()) return null;
+        return slots[(int) (h & mask)];
+    }
+
+    public int readLength() {
+        return lengths[(int) (head.get() & mask)];
+    }
+
+    public long readEpoch() {
+        return epochs[(int) (head.get() & mask)];
+    }
+
+    // Consumer: hands the slot from readSlot() back to the producer
+    public void release() {
+        head.lazySet(head.get() + 1);
+        LockSupport.unpark(producer);
+    }
+
+    // Registers the calling thread as the producer and parks it briefly until a slot frees up
+    public void awaitSpace() {
+        producer = Thread.currentThread();
+        if (tail.get() - head.get() > mask) LockSupport.parkNanos(this, PARK_NANOS);
+    }
+
+    // Producer with nothing to render: parks until wake() or a short timeout
+    public void idle() {
+        producer = Thread.currentThread();
+        LockSupport.parkNanos(this, PARK_NANOS);
+    }
+
+    // Registers the calling thread as the consumer and parks it briefly until a slot is committed
+    public void awaitData() {
+        consumer = Thread.currentThread();
+        if (head.get() == tail.get()) LockSupport.parkNanos(this, PARK_NANOS);
+    }
+
+    // Either side waiting in awaitSpace/awaitData re-checks its condition
+    public void wake() {
+        LockSupport.unpark(producer);
+        LockSupport.unpark(consumer);
+    }
+}
@@ -0,0 +1,120 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.AudioComponent;
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Pulls one block at a time from every track and sums them. Track volume, mute and solo are read
+// from TrackControls at the top of each block and ramped across it, so they can change mid-playback;
+// gain and pan automation are evaluated per block the same way (see AutomationRamps).
+// The sum goes through a look-ahead limiter, so output trails the mix position by its latency.
+// As a FrameSource it is read sequentially by one thread; a read elsewhere is treated as a seek.
+public class ProjectMixer implements FrameSource {
+
+    public static final int BLOCK_FRAMES = 4096;
+
+    private final List<AudioTrack> tracks = new ArrayList<>();
+    private final SampleKernels kernels = SampleKernels.get();
+    private final float[][] scratch = new float[2][BLOCK_FRAMES];
+    private final float[][] offsetBlock = new float[2][BLOCK_FRAMES];
+    private final float[][] ramps = new float[2][BLOCK_FRAMES];
+    private final float[] appliedGain;
+    private final long frameLength;
+    private final LookaheadLimiter limiter;
+
+    private long position = 0;
+
+    public ProjectMixer(AudioProject project) {
+        long len = 0;
+        for (AudioComponent c : project.getChildren()) {
+            if (c instanceof AudioTrack t) {
+                tracks.add(t);
+                len = Math.max(len, t.getFrameLength());
+            }
+        }
+        this.frameLength = len;
+        this.limiter = LookaheadLimiter.forOutput(project.getFormat().getSampleRate());
+
+        boolean anySolo = anySolo();
+        this.appliedGain = new float[tracks.size()];
+        for (int t = 0; t < tracks.size(); t++) {
+            appliedGain[t] = tracks.get(t).getControls().effectiveGain(anySolo);
+        }
+    }
+
+    @Override
+    public long getFrameLength() { return frameLength; }
+    public long getPosition() { return position; }
+
+    public void seek(long frame) {
+        this.position = Math.max(0, Math.min(frameLength, frame));
+        limiter.reset();
+    }
+
+    public int mix(float[][] out) {
+        return mix(out, out[0].length, null);
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return read(fromFrame, dst, dstOffset, frames, null);
+    }
+
+    // Tracks are read with readRealtime in the caller's scratch; the mixer's own buffers are allocated
+    // with it, so together nothing is allocated or borrowed per block
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return read(fromFrame, dst, dstOffset, frames, scratch);
+    }
+
+    private int read(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch rt) {
+        if (fromFrame != position) seek(fromFrame);
+        if (dstOffset == 0) return mix(dst, frames, rt);
+
+        int n = mix(offsetBlock, frames, rt);
+        System.arraycopy(offsetBlock[0], 0, dst[0], dstOffset, n);
+        System.arraycopy(offsetBlock[1], 0, dst[1], dstOffset, n);
+        return n;
+    }
+
+    private int mix(float[][] out, int maxFrames, RenderScratch rt) {
+        int frames = (int) Math.min(Math.min(maxFrames, BLOCK_FRAMES), frameLength + limiter.getLatency() - position);
+        if (frames <= 0) return 0;
+
+        Arrays.fill(out[0], 0, frames, 0f);
+        Arrays.fill(out[1], 0, frames, 0f);
+
+        boolean anySolo = anySolo();
+        for (int t = 0; t < tracks.size(); t++) {
+            float from = appliedGain[t];
+            float to = tracks.get(t).getControls().effectiveGain(anySolo);
+            appliedGain[t] = to;
+            if (from == 0f && to == 0f) continue;
+
+            AudioTrack track = tracks.get(t);
+            int n = rt != null
+                    ? track.readRealtime(position, scratch, 0, frames, rt)
+                    : track.read(position, scratch, 0, frames);
+            if (n <= 0) continue;
+            TrackControls controls = track.getControls();
+            AutomationRamps.mixInto(kernels, out, 0, scratch, n, position, from, to,
+                    controls.getGainEnvelope(), controls.getPanEnvelope(), ramps);
+        }
+
+        limiter.process(out, frames);
+
+        position += frames;
+        return frames;
+    }
+
+    private boolean anySolo() {
+        for (int t = 0; t < tracks.size(); t++) {
+            if (tracks.get(t).getControls().isSolo()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,148 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.LivePeaks;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+import java.io.File;
+import java.io.IOException;
+
+// Captures from a TargetDataLine straight into a WAV file. A high-priority capture thread reads whole
+// blocks from the line into a lock-free ring of preallocated slots; a writer thread appends them to the
+// file and feeds the live peak summary. Only the ring and the line's own buffer hold audio, so memory
+// does not grow with the length of the take, and a slow disk stalls the writer rather than the capture.
+public class Recorder {
+
+    private static final int BLOCK_BYTES = ProjectMixer.BLOCK_FRAMES * 4;
+    private static final int RING_BLOCKS = Integer.getInteger("audioeditor.record.ringBlocks", 64);
+
+    private final AudioFormat format;
+    private final File file;
+    private final PcmRingBuffer ring = new PcmRingBuffer(RING_BLOCKS, BLOCK_BYTES);
+    private final LivePeaks peaks = new LivePeaks();
+
+    private volatile boolean running = false;
+    private volatile long frameLength = 0;
+    private volatile IOException failure;
+
+    private TargetDataLine line;
+    private Thread capture;
+    private Thread writer;
+
+    // format must be 16-bit little-endian stereo, the layout WavStreamWriter produces
+    public Recorder(AudioFormat format, File file) {
+        this.format = new AudioFormat(format.getSampleRate(), 16, 2, true, false);
+        this.file = file;
+    }
+
+    public void start() throws LineUnavailableException, IOException {
+        WavStreamWriter out = new WavStreamWriter(file, format);
+        try {
+            line = AudioSystem.getTargetDataLine(format);
+            line.open(format, BLOCK_BYTES * 4);
+        } catch (LineUnavailableException | RuntimeException ex) {
+            out.close();
+            throw ex;
+        }
+
+        running = true;
+        line.start();
+
+        capture = new Thread(this::captureLoop, "record-capture");
+        writer = new Thread(() -> writeLoop(out), "record-writer");
+        capture.setDaemon(true);
+        writer.setDaemon(true);
+        capture.setPriority(Thread.MAX_PRIORITY);
+        capture.start();
+        writer.start();
+    }
+
+    public LivePeaks getPeaks() {
+        return peaks;
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    public float getSampleRate() {
+        return format.getSampleRate();
+    }
+
+    // Stops the line, waits until everything it captured is on disk and returns the finished file
+    public File stop() throws IOException, InterruptedException {
+        if (!running) return file;
+        running = false;
+        line.stop();
+        capture.join();
+        writer.join();
+        line.close();
+        if (failure != null) throw failure;
+        return file;
+    }
+
+    private void captureLoop() {
+        try {
+            while (running) {
+                byte[] slot = nextSlot();
+                int n = line.read(slot, 0, slot.length);
+                if (n > 0) ring.commit(n, 0);
+            }
+            // the stopped line still holds whatever arrived after the last full block
+            int left;
+            while ((left = line.available() / 4 * 4) > 0) {
+                byte[] slot = nextSlot();
+                int n = line.read(slot, 0, Math.min(left, slot.length));
+                if (n <= 0) break;
+                ring.commit(n, 0);
+            }
+        } catch (Exception ex) {
+            System.out.println("Recording capture stopped: " + ex.getMessage());
+        } finally {
+            nextSlot();
+            ring.commit(0, 0);
+        }
+    }
+
+    private byte[] nextSlot() {
+        byte[] slot;
+        while ((slot = ring.writeSlot()) == null) ring.awaitSpace();
+        return slot;
+    }
+
+    private void writeLoop(WavStreamWriter out) {
+        try {
+            while (true) {
+                byte[] slot = ring.readSlot();
+                if (slot == null) {
+                    ring.awaitData();
+                    continue;
+                }
+                int n = ring.readLength();
+                if (n == 0) {
+                    ring.release();
+                    return;
+                }
+                // after a write error the ring is still drained, so capture never blocks on it
+                if (failure == null) {
+                    try {
+                        out.writePcm16(slot, 0, n);
+                    } catch (IOException ex) {
+                        failure = ex;
+                    }
+                }
+                peaks.addPcm16(slot, n);
+                frameLength += n / 4;
+                ring.release();
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                if (failure == null) failure = ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ivanka.audioeditor.client.audio;
+
+// Working space for one thread that renders audio while it is being heard. It is allocated before the
+// render loop starts and handed down through readRealtime, so producing a block neither allocates nor
+// takes a BufferPool buffer. Each buffer belongs to one level of the read path (the timeline's overlap
+// mix, the clip gain ramp, a resampler's input window) so nested reads never share one.
+public final class RenderScratch {
+
+    private final float[][] mix = new float[2][BufferPool.BLOCK_FRAMES];
+    private final float[] ramp = new float[BufferPool.BLOCK_FRAMES];
+    private final float[][] input = new float[2][BufferPool.BLOCK_FRAMES];
+    private int[] hits = new int[16];
+
+    // where a timeline sums clips that overlap inside one block
+    public float[][] mix() {
+        return mix;
+    }
+
+    // a clip's gain envelope over one block
+    public float[] ramp() {
+        return ramp;
+    }
+
+    // a resampler's window of source frames
+    public float[][] input() {
+        return input;
+    }
+
+    // indices of the clips a block touches; grows only when a block hits more clips than ever before
+    public int[] hits(int atLeast) {
+        if (hits.length < atLeast) hits = new int[Math.max(atLeast, hits.length * 2)];
+        return hits;
+    }
+}
@@ -0,0 +1,167 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Polyphase Kaiser-windowed sinc rate converter. For a reduced ratio L/M every output frame falls on
+// one of L phases between input frames, so one filter per phase is computed once and cached per rate
+// pair. Very large L is quantized to MAX_PHASES. Output frames are computed on demand from the source
+// store, so a converted segment can be read at any position without converting everything before it.
+public final class Resampler {
+
+    private static final int ZERO_CROSSINGS = 16;
+    private static final int MAX_PHASES = 1024;
+    private static final double ROLLOFF = 0.97;
+    private static final double KAISER_BETA = 8.0;
+
+    private static final Map<Long, Resampler> CACHE = new ConcurrentHashMap<>();
+
+    private final int up;
+    private final int down;
+    private final int phases;
+    private final int half;
+    private final float[][] table;
+    private final int maxChunk;
+
+    private Resampler(int inRate, int outRate) {
+        int g = gcd(inRate, outRate);
+        this.up = outRate / g;
+        this.down = inRate / g;
+        this.phases = Math.min(up, MAX_PHASES);
+
+        double cutoff = Math.min(1.0, (double) up / down) * ROLLOFF;
+        this.half = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        this.table = new float[phases][2 * half];
+        for (int p = 0; p < phases; p++) {
+            double frac = (double) p / phases;
+            double sum = 0;
+            for (int i = 0; i < 2 * half; i++) {
+                double t = i - half + 1 - frac;
+                double h = cutoff * sinc(cutoff * t) * kaiser(t / half);
+                table[p][i] = (float) h;
+                sum += h;
+            }
+            // unity gain at DC for every phase
+            for (int i = 0; i < 2 * half; i++) table[p][i] = (float) (table[p][i] / sum);
+        }
+
+        this.maxChunk = (int) ((long) (BufferPool.BLOCK_FRAMES - 2 * half - 2) * up / down);
+        if (maxChunk < 1) throw new IllegalArgumentException("Unsupported rate ratio " + inRate + " -> " + outRate);
+    }
+
+    public static Resampler of(float inRate, float outRate) {
+        int in = Math.round(inRate);
+        int out = Math.round(outRate);
+        if (in <= 0 || out <= 0) throw new IllegalArgumentException("Invalid sample rate: " + inRate + " -> " + outRate);
+        return CACHE.computeIfAbsent(((long) in << 32) | out, k -> new Resampler(in, out));
+    }
+
+    public long outputLength(long inputFrames) {
+        return (inputFrames * up + down - 1) / down;
+    }
+
+    // Fills dst with output frames [fromFrame, fromFrame + frames) converted from src
+    public int read(SampleStore src, long fromFrame, float[][] dst, int dstOffset, int frames) {
+        float[][] in = BufferPool.samples();
+        try {
+            return read(src, fromFrame, dst, dstOffset, frames, in);
+        } finally {
+            BufferPool.release(in);
+        }
+    }
+
+    // Same, with the source window in the caller's float[2][BufferPool.BLOCK_FRAMES]
+    public int read(SampleStore src, long fromFrame, float[][] dst, int dstOffset, int frames, float[][] in) {
+        long total = outputLength(src.getFrameLength());
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= total) return 0;
+        int n = (int) Math.min(frames, total - fromFrame);
+
+        for (int done = 0; done < n; ) {
+            int chunk = Math.min(n - done, maxChunk);
+            long first = fromFrame + done;
+            long inStart = inputIndex(first) - half + 1;
+            long inEnd = inputIndex(first + chunk - 1) + half + 1;
+            readPadded(src, inStart, in, (int) (inEnd - inStart));
+            convolve(in, inStart, first, chunk, dst, dstOffset + done);
+            done += chunk;
+        }
+        return n;
+    }
+
+    private void convolve(float[][] in, long inStart, long first, int count, float[][] dst, int dstOffset) {
+        float[] inL = in[0], inR = in[1];
+        float[] outL = dst[0], outR = dst[1];
+        int taps = 2 * half;
+        for (int k = 0; k < count; k++) {
+            long out = first + k;
+            long base = inputIndex(out);
+            float[] h = table[phaseIndex(out)];
+            int s = (int) (base - half + 1 - inStart);
+            float l = 0f, r = 0f;
+            for (int i = 0; i < taps; i++) {
+                l += inL[s + i] * h[i];
+                r += inR[s + i] * h[i];
+            }
+            outL[dstOffset + k] = l;
+            outR[dstOffset + k] = r;
+        }
+    }
+
+    // Input frame at or before output frame k; with quantized phases the next frame when the phase rounds up
+    private long inputIndex(long k) {
+        long pos = k * down;
+        long base = pos / up;
+        if (phases < up && (int) ((pos % up) * phases / (double) up + 0.5) == phases) base++;
+        return base;
+    }
+
+    private int phaseIndex(long k) {
+        long rem = (k * down) % up;
+        if (phases == up) return (int) rem;
+        int p = (int) (rem * phases / (double) up + 0.5);
+        return p == phases ? 0 : p;
+    }
+
+    private static void readPadded(SampleStore src, long from, float[][] dst, int frames) {
+        int lead = (int) Math.max(0, -from);
+        Arrays.fill(dst[0], 0, lead, 0f);
+        Arrays.fill(dst[1], 0, lead, 0f);
+        int n = lead < frames ? src.read(from + lead, dst, lead, frames - lead) : 0;
+        if (n < 0) n = 0;
+        Arrays.fill(dst[0], lead + n, frames, 0f);
+        Arrays.fill(dst[1], lead + n, frames, 0f);
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1.0;
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+
+    private static double kaiser(double x) {
+        if (x <= -1 || x >= 1) return 0;
+        return besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / besselI0(KAISER_BETA);
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1, term = 1, q = x * x / 4;
+        for (int k = 1; k < 50; k++) {
+            term *= q / (k * k);
+            sum += term;
+            if (term < sum * 1e-12) break;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
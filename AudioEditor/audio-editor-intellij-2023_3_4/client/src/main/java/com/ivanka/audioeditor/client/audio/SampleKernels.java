@@ -0,0 +1,74 @@
+package com.ivanka.audioeditor.client.audio;
+
+// Inner loops shared by mixing, export and waveform peaks. Every kernel is element-wise or an
+// order-independent min/max, so the SIMD and scalar versions produce identical results.
+// The SIMD version needs --add-modules jdk.incubator.vector at runtime and can be switched off
+// with -Daudioeditor.simd=false.
+public abstract class SampleKernels {
+
+    private static final SampleKernels INSTANCE = select();
+
+    public static SampleKernels get() {
+        return INSTANCE;
+    }
+
+    public abstract String name();
+
+    // dst[i] += src[i] * gain
+    public abstract void mulAdd(float[] dst, float[] src, float gain, int n);
+
+    // a[i] *= gain
+    public abstract void scale(float[] a, float gain, int n);
+
+    // max(start, |a[0..n)|)
+    public abstract float peak(float[] a, int n, float start);
+
+    // out[0] = min(out[0], a[from..to)), out[1] = max(out[1], a[from..to))
+    public abstract void minMax(float[] a, int from, int to, float[] out);
+
+    private static SampleKernels select() {
+        if (Boolean.parseBoolean(System.getProperty("audioeditor.simd", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (SampleKernels) Class.forName("com.ivanka.audioeditor.client.audio.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (Throwable t) {
+                System.out.println("SIMD kernels unavailable, using scalar: " + t);
+            }
+        }
+        return new Scalar();
+    }
+
+    static class Scalar extends SampleKernels {
+
+        @Override public String name() { return "scalar"; }
+
+        @Override
+        public void mulAdd(float[] dst, float[] src, float gain, int n) {
+            for (int i = 0; i < n; i++) dst[i] += src[i] * gain;
+        }
+
+        @Override
+        public void scale(float[] a, float gain, int n) {
+            for (int i = 0; i < n; i++) a[i] *= gain;
+        }
+
+        @Override
+        public float peak(float[] a, int n, float start) {
+            float max = start;
+            for (int i = 0; i < n; i++) max = Math.max(max, Math.abs(a[i]));
+            return max;
+        }
+
+        @Override
+        public void minMax(float[] a, int from, int to, float[] out) {
+            float lo = out[0], hi = out[1];
+            for (int i = from; i < to; i++) {
+                lo = Math.min(lo, a[i]);
+                hi = Math.max(hi, a[i]);
+            }
+            out[0] = lo;
+            out[1] = hi;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Plays a FrameSource through a SourceDataLine. A high-priority render thread pulls fixed-size blocks
+// from the source into a lock-free ring of preallocated slots and a writer thread drains the ring into
+// the line. The renderer reads through readRealtime with a RenderScratch it allocates before its loop,
+// so the timeline, clip gain and resampler work in that instead of BufferPool, and audio that is still
+// being prepared (a tempo-stretched block) plays as silence rather than being computed on this thread.
+// The remaining exceptions are a track timeline rebuilt on the first block after an edit and a segment
+// resolving edits that are still pending. The ring's headroom absorbs pauses elsewhere in the
+// application. In loop mode the renderer wraps to frame 0 inside the block that crosses the end, so
+// the loop point is gapless.
+public class StreamingPlayer {
+
+    public interface Listener {
+        void onFinished();
+    }
+
+    private static final int BLOCK_FRAMES = ProjectMixer.BLOCK_FRAMES;
+    private static final int FRAME_BYTES = 4;
+    private static final int RING_BLOCKS = Integer.getInteger("audioeditor.playback.ringBlocks", 8);
+
+    private final FrameSource source;
+    private final AudioFormat format;
+    private final Listener listener;
+    private final PcmRingBuffer ring = new PcmRingBuffer(RING_BLOCKS, BLOCK_FRAMES * FRAME_BYTES);
+    private final AtomicReference<Seek> pendingSeek = new AtomicReference<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    // a seek target together with the epoch its blocks must carry
+    private record Seek(long frame, long epoch) {}
+
+    private volatile boolean running = false;
+    private volatile boolean looping = false;
+    private volatile long positionBase = 0;
+    private volatile long lineMark = 0;
+
+    private SourceDataLine line;
+    private Thread renderer;
+    private Thread writer;
+    private boolean stopped = false;
+
+    public StreamingPlayer(FrameSource source, float sampleRate, Listener listener) {
+        this.source = source;
+        this.format = new AudioFormat(sampleRate, 16, 2, true, false);
+        this.listener = listener;
+    }
+
+    public void start(long fromFrame) throws LineUnavailableException {
+        line = AudioSystem.getSourceDataLine(format);
+        line.open(format, BLOCK_FRAMES * FRAME_BYTES * 2);
+
+        long start = clampFrame(fromFrame);
+        pendingSeek.set(new Seek(start, epoch.get()));
+        positionBase = start;
+        lineMark = line.getLongFramePosition();
+
+        running = true;
+        line.start();
+
+        renderer = new Thread(this::renderLoop, "playback-render");
+        writer = new Thread(this::writeLoop, "playback-writer");
+        renderer.setDaemon(true);
+        writer.setDaemon(true);
+        renderer.setPriority(Thread.MAX_PRIORITY);
+        writer.setPriority(Thread.MAX_PRIORITY);
+        renderer.start();
+        writer.start();
+    }
+
+    // The epoch moves first so the writer starts dropping older blocks at once; the renderer then takes
+    // the target and its epoch as one value, so every block it tags with the new epoch starts from the
+    // new position
+    public synchronized void seek(long frame) {
+        if (!running) return;
+        long target = clampFrame(frame);
+        long ep = epoch.incrementAndGet();
+        pendingSeek.set(new Seek(target, ep));
+        ring.wake();
+        line.flush();
+        positionBase = target;
+        lineMark = line.getLongFramePosition();
+    }
+
+    // Set before start(); the source then plays from the seek position to its end and around again
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    public boolean isLooping() {
+        return looping;
+    }
+
+    public long getPositionFrame() {
+        SourceDataLine l = line;
+        if (l == null) return positionBase;
+        long played = positionBase + Math.max(0, l.getLongFramePosition() - lineMark);
+        long len = source.getFrameLength();
+        if (looping) return len > 0 ? played % len : 0;
+        return Math.min(len, played);
+    }
+
+    public long getFrameLength() {
+        return source.getFrameLength();
+    }
+
+    public float getSampleRate() {
+        return format.getSampleRate();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public synchronized void stop() {
+        if (stopped) return;
+        stopped = true;
+        running = false;
+        ring.wake();
+        if (line != null) {
+            try { line.stop(); } catch (Exception ignore) {}
+            try { line.close(); } catch (Exception ignore) {}
+        }
+    }
+
+    private void renderLoop() {
+        float[][] block = new float[2][BLOCK_FRAMES];
+        RenderScratch scratch = new RenderScratch();
+        long pos = 0;
+        long ep = 0;
+
+        try {
+            while (running) {
+                byte[] slot = ring.writeSlot();
+                if (slot == null) {
+                    ring.awaitSpace();
+                    continue;
+                }
+
+                Seek seek = pendingSeek.getAndSet(null);
+                if (seek != null) {
+                    pos = seek.frame();
+                    ep = seek.epoch();
+                }
+
+                int n = Math.max(0, source.readRealtime(pos, block, 0, BLOCK_FRAMES, scratch));
+                pos += n;
+                if (looping) {
+                    // a loop shorter than a block may wrap more than once
+                    while (n < BLOCK_FRAMES) {
+                        int m = source.readRealtime(0, block, n, BLOCK_FRAMES - n, scratch);
+                        if (m <= 0) break;
+                        n += m;
+                        pos = m;
+                    }
+                }
+                if (n == 0) {
+                    ring.commit(0, ep);
+                    // nothing left to render until the next seek
+                    while (running && pendingSeek.get() == null) ring.idle();
+                    continue;
+                }
+
+                ring.commit(PcmUtils.toPCM16(block, 0, n, slot), ep);
+            }
+        } catch (Exception ex) {
+            System.out.println("Playback renderer stopped: " + ex.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                byte[] slot = ring.readSlot();
+                if (slot == null) {
+                    ring.awaitData();
+                    continue;
+                }
+
+                long ep = ring.readEpoch();
+                int n = ring.readLength();
+                if (ep != epoch.get()) {
+                    ring.release();
+                    continue;
+                }
+                if (n > 0) {
+                    line.write(slot, 0, n);
+                    ring.release();
+                    continue;
+                }
+
+                ring.release();
+                line.drain();
+                if (running && ep == epoch.get()) {
+                    stop();
+                    listener.onFinished();
+                    return;
+                }
+            }
+        } catch (Exception ex) {
+            System.out.println("Playback writer stopped: " + ex.getMessage());
+        }
+    }
+
+    private long clampFrame(long frame) {
+        return Math.max(0, Math.min(source.getFrameLength(), frame));
+    }
+}
@@ -0,0 +1,178 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+
+import java.util.Arrays;
+
+// WSOLA tempo change without pitch change. Hann frames are overlap-added at a fixed synthesis hop;
+// each analysis frame is shifted within +-tolerance to the position that best continues the previous
+// one, found by a coarse search on a decimated mono signal refined at full rate. Output is produced in
+// blocks of BLOCK_HOPS hops. The last frame of every block sits at its nominal position instead of
+// being searched, so each block starts from a known frame and can be rendered on its own, in any
+// order, with the same result as rendering the whole selection front to back.
+public final class TimeStretch {
+
+    private static final double FRAME_SEC = 0.04;
+    private static final int DECIMATE = 4;
+    private static final int BLOCK_HOPS = 64;
+
+    private final SampleStore src;
+    private final double tempo;
+    private final int frame;
+    private final int hop;
+    private final int tol;
+    private final long outLen;
+    private final float[] window;
+
+    public TimeStretch(SampleStore src, double tempo, float sampleRate) {
+        if (tempo <= 0) throw new IllegalArgumentException("Tempo must be positive: " + tempo);
+        this.src = src;
+        this.tempo = tempo;
+        this.frame = Math.max(64, ((int) (sampleRate * FRAME_SEC)) & ~(DECIMATE * 2 - 1));
+        this.hop = frame / 2;
+        this.tol = hop / 2;
+        this.outLen = outputLength(src.getFrameLength(), tempo);
+        this.window = new float[frame];
+        for (int i = 0; i < frame; i++) window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / frame));
+    }
+
+    public static long outputLength(long inputFrames, double tempo) {
+        return tempo == 1.0 ? inputFrames : Math.round(inputFrames / tempo);
+    }
+
+    public long getFrameLength() {
+        return outLen;
+    }
+
+    public int getBlockFrames() {
+        return BLOCK_HOPS * hop;
+    }
+
+    public long getBlockCount() {
+        return (outLen + getBlockFrames() - 1) / getBlockFrames();
+    }
+
+    // Output frames [block * getBlockFrames(), ...) into a new array; the last block is shorter
+    public float[][] renderBlock(long block) {
+        long firstHop = block * BLOCK_HOPS;
+        int frames = (int) Math.min(getBlockFrames(), outLen - firstHop * hop);
+        float[][] out = new float[2][Math.max(0, frames)];
+        if (frames <= 0) return out;
+
+        float[][] cand = new float[2][frame + 2 * tol];
+        float[][] natural = new float[2][frame];
+        float[] candMono = new float[cand[0].length / DECIMATE + 1];
+        float[] natMono = new float[frame / DECIMATE];
+        float[][] acc = new float[2][frame];
+
+        // the falling half of the previous block's last frame, which always sits at its nominal position
+        long prev = 0;
+        if (firstHop > 0) {
+            prev = nominal(firstHop - 1);
+            readPadded(src, prev, natural, frame);
+            for (int i = 0; i < frame - hop; i++) {
+                acc[0][i] += natural[0][hop + i] * window[hop + i];
+                acc[1][i] += natural[1][hop + i] * window[hop + i];
+            }
+        }
+
+        int written = 0;
+        for (long j = firstHop; written < frames; j++) {
+            long chosen = nominal(j);
+            if (j > 0 && (j + 1) % BLOCK_HOPS != 0) {
+                long lo = Math.max(0, chosen - tol);
+                long hi = chosen + tol;
+                readPadded(src, lo, cand, (int) (hi - lo) + frame);
+                readPadded(src, prev + hop, natural, frame);
+                chosen = lo + bestOffset(cand, (int) (hi - lo), natural, frame, candMono, natMono);
+            }
+            readPadded(src, chosen, natural, frame);
+
+            for (int i = 0; i < frame; i++) {
+                // the very first frame has nothing to fade into, so its rising half stays flat
+                float w = (j == 0 && i < hop) ? 1f : window[i];
+                acc[0][i] += natural[0][i] * w;
+                acc[1][i] += natural[1][i] * w;
+            }
+
+            int emit = Math.min(hop, frames - written);
+            System.arraycopy(acc[0], 0, out[0], written, emit);
+            System.arraycopy(acc[1], 0, out[1], written, emit);
+            written += emit;
+
+            System.arraycopy(acc[0], hop, acc[0], 0, frame - hop);
+            System.arraycopy(acc[1], hop, acc[1], 0, frame - hop);
+            Arrays.fill(acc[0], frame - hop, frame, 0f);
+            Arrays.fill(acc[1], frame - hop, frame, 0f);
+            prev = chosen;
+        }
+        return out;
+    }
+
+    private long nominal(long j) {
+        return Math.round(j * hop * tempo);
+    }
+
+    // Offset into cand (0..span) whose frame best matches the natural continuation of the previous frame
+    private static int bestOffset(float[][] cand, int span, float[][] natural, int frame, float[] candMono, float[] natMono) {
+        int candLen = (span + frame) / DECIMATE;
+        int natLen = frame / DECIMATE;
+        for (int i = 0; i < candLen; i++) {
+            int s = i * DECIMATE;
+            candMono[i] = cand[0][s] + cand[1][s];
+        }
+        for (int i = 0; i < natLen; i++) {
+            int s = i * DECIMATE;
+            natMono[i] = natural[0][s] + natural[1][s];
+        }
+
+        int coarse = 0;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int d = 0; d * DECIMATE <= span && d + natLen <= candLen; d++) {
+            double score = normalizedCorrelation(candMono, d, natMono, natLen);
+            if (score > best) {
+                best = score;
+                coarse = d * DECIMATE;
+            }
+        }
+
+        int refined = coarse;
+        best = Double.NEGATIVE_INFINITY;
+        for (int d = Math.max(0, coarse - DECIMATE + 1); d <= Math.min(span, coarse + DECIMATE - 1); d++) {
+            double score = stereoCorrelation(cand, d, natural, frame);
+            if (score > best) {
+                best = score;
+                refined = d;
+            }
+        }
+        return refined;
+    }
+
+    private static double normalizedCorrelation(float[] a, int offset, float[] b, int len) {
+        float dot = 0f, energy = 0f;
+        for (int i = 0; i < len; i++) {
+            float x = a[offset + i];
+            dot += x * b[i];
+            energy += x * x;
+        }
+        return energy > 0 ? dot / Math.sqrt(energy) : 0;
+    }
+
+    private static double stereoCorrelation(float[][] cand, int offset, float[][] natural, int frame) {
+        float dot = 0f, energy = 0f;
+        float[] cl = cand[0], cr = cand[1], nl = natural[0], nr = natural[1];
+        for (int i = 0; i < frame; i++) {
+            float x = cl[offset + i] + cr[offset + i];
+            dot += x * (nl[i] + nr[i]);
+            energy += x * x;
+        }
+        return energy > 0 ? dot / Math.sqrt(energy) : 0;
+    }
+
+    private static void readPadded(SampleStore src, long from, float[][] dst, int frames) {
+        int n = src.read(from, dst, 0, frames);
+        if (n < 0) n = 0;
+        Arrays.fill(dst[0], n, frames, 0f);
+        Arrays.fill(dst[1], n, frames, 0f);
+    }
+}
@@ -0,0 +1,39 @@
+package com.ivanka.audioeditor.client.audio;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Mixer parameters of one track. Written from the UI thread, read by the audio thread once per block,
+// so a change is heard on the next block without stopping or re-rendering anything. The gain and pan
+// envelopes are immutable, so swapping one in is a single reference write.
+public class TrackControls {
+
+    private final AtomicInteger volumeBits = new AtomicInteger(Float.floatToIntBits(1f));
+    private final AtomicBoolean muted = new AtomicBoolean(false);
+    private final AtomicBoolean solo = new AtomicBoolean(false);
+    private volatile Envelope gainEnvelope = Envelope.flat(1f);
+    private volatile Envelope panEnvelope = Envelope.flat(0f);
+
+    public float getVolume() { return Float.intBitsToFloat(volumeBits.get()); }
+    public void setVolume(double volume) {
+        volumeBits.set(Float.floatToIntBits((float) Math.max(0, volume)));
+    }
+
+    public boolean isMuted() { return muted.get(); }
+    public void setMuted(boolean value) { muted.set(value); }
+
+    public boolean isSolo() { return solo.get(); }
+    public void setSolo(boolean value) { solo.set(value); }
+
+    public Envelope getGainEnvelope() { return gainEnvelope; }
+    public void setGainEnvelope(Envelope envelope) { this.gainEnvelope = envelope; }
+
+    // -1 is hard left, 1 hard right
+    public Envelope getPanEnvelope() { return panEnvelope; }
+    public void setPanEnvelope(Envelope envelope) { this.panEnvelope = envelope; }
+
+    public float effectiveGain(boolean anySolo) {
+        if (isMuted() || (anySolo && !isSolo())) return 0f;
+        return getVolume();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ivanka.audioeditor.client.audio;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Loaded reflectively by SampleKernels only when jdk.incubator.vector is in the boot layer.
+// Only the reductions are overridden: C2 already auto-vectorizes the element-wise scalar loops
+// and measured faster than the incubator API for them, but it does not vectorize float min/max reductions.
+final class VectorKernels extends SampleKernels.Scalar {
+
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+
+    VectorKernels() {
+        if (F.length() < 4) throw new IllegalStateException("No usable SIMD width: " + F);
+    }
+
+    @Override public String name() { return "simd-" + F.vectorBitSize(); }
+
+    @Override
+    public float peak(float[] a, int n, float start) {
+        int i = 0;
+        FloatVector acc = FloatVector.broadcast(F, start);
+        for (int bound = F.loopBound(n); i < bound; i += F.length()) {
+            acc = acc.max(FloatVector.fromArray(F, a, i).abs());
+        }
+        float max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < n; i++) max = Math.max(max, Math.abs(a[i]));
+        return max;
+    }
+
+    @Override
+    public void minMax(float[] a, int from, int to, float[] out) {
+        int i = from;
+        int bound = from + F.loopBound(to - from);
+        if (i < bound) {
+            FloatVector lo = FloatVector.broadcast(F, out[0]);
+            FloatVector hi = FloatVector.broadcast(F, out[1]);
+            for (; i < bound; i += F.length()) {
+                FloatVector v = FloatVector.fromArray(F, a, i);
+                lo = lo.min(v);
+                hi = hi.max(v);
+            }
+            out[0] = lo.reduceLanes(VectorOperators.MIN);
+            out[1] = hi.reduceLanes(VectorOperators.MAX);
+        }
+        super.minMax(a, i, to, out);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class WavStreamWriter implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final RandomAccessFile raf;
+    private final FileChannel ch;
+    private final AudioFormat format;
+    private final ByteBuffer pcm = BufferPool.direct();
+    private long dataBytes = 0;
+
+    public WavStreamWriter(File out, AudioFormat format) throws IOException {
+        this.raf = new RandomAccessFile(out, "rw");
+        this.ch = raf.getChannel();
+        this.format = format;
+        raf.setLength(0);
+        raf.write(header(0));
+    }
+
+    public void write(float[][] block, int frames) throws IOException {
+        write(block, 0, frames);
+    }
+
+    public void write(float[][] block, int offset, int frames) throws IOException {
+        int off = offset;
+        int end = offset + frames;
+        while (off < end) {
+            int n = Math.min(end - off, ProjectMixer.BLOCK_FRAMES);
+            pcm.clear();
+            int bytes = PcmUtils.toPCM16(block, off, n, pcm);
+            pcm.flip();
+            while (pcm.hasRemaining()) ch.write(pcm);
+            dataBytes += bytes;
+            off += n;
+        }
+    }
+
+    // Bytes already in the file's layout: little-endian 16-bit stereo
+    public void writePcm16(byte[] bytes, int offset, int length) throws IOException {
+        int off = offset;
+        int end = offset + length;
+        while (off < end) {
+            int n = Math.min(end - off, pcm.capacity());
+            pcm.clear();
+            pcm.put(bytes, off, n);
+            pcm.flip();
+            while (pcm.hasRemaining()) ch.write(pcm);
+            dataBytes += n;
+            off += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            raf.seek(0);
+            raf.write(header(dataBytes));
+        } finally {
+            raf.close();
+            BufferPool.release(pcm);
+        }
+    }
+
+    private byte[] header(long dataLen) {
+        int channels = 2;
+        int bits = 16;
+        int rate = (int) format.getSampleRate();
+        int blockAlign = channels * bits / 8;
+
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        bb.put(new byte[]{'R', 'I', 'F', 'F'});
+        bb.putInt((int) Math.min(0xFFFFFFFFL, 36 + dataLen));
+        bb.put(new byte[]{'W', 'A', 'V', 'E'});
+        bb.put(new byte[]{'f', 'm', 't', ' '});
+        bb.putInt(16);
+        bb.putShort((short) 1);
+        bb.putShort((short) channels);
+        bb.putInt(rate);
+        bb.putInt(rate * blockAlign);
+        bb.putShort((short) blockAlign);
+        bb.putShort((short) bits);
+        bb.put(new byte[]{'d', 'a', 't', 'a'});
+        bb.putInt((int) Math.min(0xFFFFFFFFL, dataLen));
+        return bb.array();
+    }
+}
@@ -11,9 +11,14 @@ public enum EditorEventType {
     CLIPBOARD_COPY,
     CLIPBOARD_CUT,
     CLIPBOARD_PASTE,
+    EDIT_UNDO,
+    EDIT_REDO,
     PLAYBACK_START,
     PLAYBACK_STOP,
+    RECORD_START,
+    RECORD_STOP,
     WAVEFORM_REDRAW,
+    AUTOMATION_EDIT,
     TRACKS_REFRESH_REQUEST,
     NOTIFY_INFO,
     NOTIFY_WARN,
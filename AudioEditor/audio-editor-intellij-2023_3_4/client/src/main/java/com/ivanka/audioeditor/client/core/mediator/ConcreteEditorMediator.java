@@ -11,6 +11,9 @@ public class ConcreteEditorMediator implements EditorMediator {
     private EditorColleague exportModule;
     private EditorColleague notificationModule;
     private EditorColleague clipboardModule;
+    private EditorColleague historyModule;
+    private EditorColleague recordingModule;
+    private EditorColleague automationModule;
 
     @Override
     public void register(String key, EditorColleague colleague) {
@@ -40,6 +43,15 @@ public class ConcreteEditorMediator implements EditorMediator {
             case "Clipboard":
                 this.clipboardModule = colleague;
                 break;
+            case "History":
+                this.historyModule = colleague;
+                break;
+            case "Recording":
+                this.recordingModule = colleague;
+                break;
+            case "Automation":
+                this.automationModule = colleague;
+                break;
             default:
                 System.err.println("Unknown colleague key registered: " + key);
         }
@@ -76,6 +88,12 @@ public class ConcreteEditorMediator implements EditorMediator {
 
             case CLIPBOARD_COPY, CLIPBOARD_CUT, CLIPBOARD_PASTE -> relay(clipboardModule, e);
 
+            case EDIT_UNDO, EDIT_REDO -> relay(historyModule, e);
+
+            case RECORD_START, RECORD_STOP -> relay(recordingModule, e);
+
+            case AUTOMATION_EDIT -> relay(automationModule, e);
+
             default -> { /* no-op */ }
         }
     }
@@ -0,0 +1,85 @@
+package com.ivanka.audioeditor.client.core.modules;
+
+import com.ivanka.audioeditor.client.audio.Envelope;
+import com.ivanka.audioeditor.client.audio.TrackControls;
+import com.ivanka.audioeditor.client.core.events.EditorEvent;
+import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioSegment;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.model.composite.TrackTimeline;
+import com.ivanka.audioeditor.client.ui.EditorContext;
+
+// Writes ramps into the track gain/pan envelopes or into the gain envelope of the clip under the
+// selection. The mixer picks a new envelope up on its next block; it reaches the server on save.
+public class AutomationModule extends AbstractColleague {
+    private final EditorContext ctx;
+
+    public AutomationModule(EditorContext ctx) { this.ctx = ctx; }
+    @Override public String key() { return "Automation"; }
+
+    @Override
+    public void receive(EditorEvent e) {
+        switch (e.type) {
+            case AUTOMATION_EDIT -> onEdit(e);
+            default -> {}
+        }
+    }
+
+    private void onEdit(EditorEvent e) {
+        String trackName = e.get("trackName");
+        String shape = e.get("shape");
+
+        AudioTrack track = getTrack(trackName);
+        if (track == null) return;
+        TrackControls controls = track.getControls();
+
+        if ("clear".equals(shape)) {
+            controls.setGainEnvelope(controls.getGainEnvelope().cleared());
+            controls.setPanEnvelope(controls.getPanEnvelope().cleared());
+            for (var c : track.getChildren()) {
+                if (c instanceof AudioSegment seg) seg.setGainEnvelope(seg.getGainEnvelope().cleared());
+            }
+            ctx.toast("Automation cleared on '" + trackName + "'.");
+            return;
+        }
+
+        var sel = ctx.getSelections().get(trackName);
+        if (sel == null || !sel.isActive() || track.getFrameLength() == 0) {
+            ctx.alertWarn("Select a range on the track first.");
+            return;
+        }
+        long[] range = ctx.selectionToSampleRange(trackName, sel, track.getFrameLength());
+
+        switch (shape) {
+            case "fadeIn" -> controls.setGainEnvelope(
+                    controls.getGainEnvelope().withRamp(range[0], range[1], 0f, 1f, true));
+            case "fadeOut" -> controls.setGainEnvelope(
+                    controls.getGainEnvelope().withRamp(range[0], range[1], 1f, 0f, true));
+            case "panSweep" -> controls.setPanEnvelope(
+                    controls.getPanEnvelope().withRamp(range[0], range[1], -1f, 1f, false));
+            case "clipFadeIn", "clipFadeOut" -> {
+                TrackTimeline.Clip clip = track.getTimeline().clipAt(range[0]);
+                if (clip == null) {
+                    ctx.alertWarn("No audio under the selection.");
+                    return;
+                }
+                long from = range[0] - clip.start();
+                long to = Math.min(range[1], clip.end()) - clip.start();
+                boolean in = "clipFadeIn".equals(shape);
+                AudioSegment seg = clip.segment();
+                seg.setGainEnvelope(seg.getGainEnvelope().withRamp(from, to, in ? 0f : 1f, in ? 1f : 0f, true));
+            }
+            default -> { return; }
+        }
+        ctx.toast("Automation updated on '" + trackName + "'.");
+    }
+
+    private AudioTrack getTrack(String name) {
+        AudioProject project = ctx.getAudioProject();
+        if (project == null) return null;
+        return (AudioTrack) project.getChildren().stream()
+                .filter(c -> c instanceof AudioTrack && c.getName().equals(name))
+                .findFirst().orElse(null);
+    }
+}
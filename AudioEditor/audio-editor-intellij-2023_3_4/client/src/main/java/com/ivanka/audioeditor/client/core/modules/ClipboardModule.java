@@ -4,12 +4,28 @@ import com.ivanka.audioeditor.client.core.events.EditorEvent;
 import com.ivanka.audioeditor.client.core.events.EditorEventType;
 import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
 import com.ivanka.audioeditor.client.model.composite.*;
+import com.ivanka.audioeditor.client.model.store.MappedSampleStore;
+import com.ivanka.audioeditor.client.model.store.PieceTable;
 import com.ivanka.audioeditor.client.ui.EditorContext;
 
+import javax.sound.sampled.AudioFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class ClipboardModule extends AbstractColleague {
 
+    private static final long SPILL_THRESHOLD_FRAMES =
+            Long.getLong("audioeditor.clipboard.spillFrames", 1L << 20);
+
+    private static final AtomicReference<AudioSegment> clipboard = new AtomicReference<>();
+    private static final ExecutorService spillExec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "clipboard-spill");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final EditorContext ctx;
-    private static AudioSegment clipboardSegment = null;
 
     public ClipboardModule(EditorContext ctx) {
         this.ctx = ctx;
@@ -37,75 +53,123 @@ public class ClipboardModule extends AbstractColleague {
     }
     private void onCopy(EditorEvent e) {
         String trackName = e.get("trackName");
-        AudioSegment mainSegment = getMainSegment(trackName);
+        AudioTrack track = getTrack(trackName);
         var sel = ctx.getSelections().get(trackName);
 
-        if (mainSegment == null || sel == null || !sel.isActive()) {
+        if (track == null || sel == null || !sel.isActive()) {
             ctx.alertWarn("Select a segment to copy.");
             return;
         }
 
-        int[] range = selectionToSampleRange(sel, mainSegment, 900);
-        float[][] slice = PcmUtils.slice(mainSegment.getSamples(), range[0], range[1]);
+        long[] range = ctx.selectionToSampleRange(trackName, sel, track.getFrameLength());
+        TrackTimeline.Clip clip = track.getTimeline().clipAt(range[0]);
+        if (clip == null) {
+            ctx.alertWarn("No audio under the selection.");
+            return;
+        }
+        PieceTable slice = clip.segment().slice(range[0] - clip.start(), Math.min(range[1], clip.end()) - clip.start());
 
-        clipboardSegment = new AudioSegment("clip", slice, mainSegment.getFormat());
-        ctx.toast("Copied " + slice[0].length + " samples.");
+        setClipboard(slice, clip.segment().getFormat());
+        ctx.toast("Copied " + slice.getFrameLength() + " samples.");
     }
     private void onCut(EditorEvent e) {
         String trackName = e.get("trackName");
-        AudioSegment mainSegment = getMainSegment(trackName);
+        AudioTrack track = getTrack(trackName);
         var sel = ctx.getSelections().get(trackName);
-        if (mainSegment == null || sel == null || !sel.isActive()) {
+        if (track == null || sel == null || !sel.isActive()) {
             ctx.alertWarn("Select a segment to cut.");
             return;
         }
 
-        int[] range = selectionToSampleRange(sel, mainSegment, 900);
-        float[][] slice = PcmUtils.slice(mainSegment.getSamples(), range[0], range[1]);
-        clipboardSegment = new AudioSegment("clip", slice, mainSegment.getFormat());
-        ctx.toast("Cut " + slice[0].length + " samples.");
+        long[] range = ctx.selectionToSampleRange(trackName, sel, track.getFrameLength());
+        TrackTimeline.Clip clip = track.getTimeline().clipAt(range[0]);
+        if (clip == null) {
+            ctx.alertWarn("No audio under the selection.");
+            return;
+        }
+        AudioSegment segment = clip.segment();
+        long from = range[0] - clip.start();
+        long to = Math.min(range[1], clip.end()) - clip.start();
 
-        float[][] remaining = PcmUtils.cut(mainSegment.getSamples(), range[0], range[1]);
-        mainSegment.setSamples(remaining);
+        PieceTable slice = segment.slice(from, to);
+        setClipboard(slice, segment.getFormat());
+        ctx.toast("Cut " + slice.getFrameLength() + " samples.");
+
+        segment.cut(from, to);
+        ctx.getAudioProject().getHistory().record(segment);
         sel.clear();
         ctx.redrawTrack(trackName);
     }
 
     private void onPaste(EditorEvent e) throws Exception {
         String trackName = e.get("trackName");
-        AudioSegment mainSegment = getMainSegment(trackName);
+        AudioTrack track = getTrack(trackName);
 
-        if (mainSegment == null) {
+        if (track == null || track.getTimeline().getFrameLength() == 0) {
             ctx.alertWarn("No track audio to paste into.");
             return;
         }
+        AudioSegment clipboardSegment = clipboard.get();
         if (clipboardSegment == null) {
             ctx.alertWarn("Clipboard is empty.");
             return;
         }
 
-        float[][] clipSamples = clipboardSegment.getSamples();
-        float[][] mainSamples = mainSegment.getSamples();
+        PieceTable clip = clipboardSegment.getPieces();
+        TrackTimeline timeline = track.getTimeline();
 
         var sel = ctx.getSelections().get(trackName);
-        float[][] newSamples;
+        AudioSegment target;
 
         if (sel != null && sel.isActive()) {
-            int[] range = selectionToSampleRange(sel, mainSegment, 900);
-            newSamples = PcmUtils.splice(mainSamples, clipSamples, range[0], range[1]);
+            long[] range = ctx.selectionToSampleRange(trackName, sel, track.getFrameLength());
+            TrackTimeline.Clip at = timeline.clipAt(range[0]);
+            if (at == null) {
+                ctx.alertWarn("No track audio to paste into.");
+                return;
+            }
+            target = at.segment();
+            target.splice(clip, range[0] - at.start(), Math.min(range[1], at.end()) - at.start());
             sel.clear();
         } else {
             Double cursorFrac = e.get("cursorFrac");
             double frac = (cursorFrac == null) ? 0.0 : Math.max(0.0, Math.min(1.0, cursorFrac));
-            int totalSamples = mainSamples[0].length;
-            int samplePos = (int) Math.round(totalSamples * frac);
-            newSamples = PcmUtils.splice(mainSamples, clipSamples, samplePos, samplePos);
+            long totalSamples = timeline.getFrameLength();
+            long samplePos = Math.round(totalSamples * frac);
+            // the very end of the track belongs to the clip that ends there
+            TrackTimeline.Clip at = timeline.clipAt(Math.min(samplePos, totalSamples - 1));
+            if (at == null) {
+                ctx.alertWarn("No track audio to paste into.");
+                return;
+            }
+            target = at.segment();
+            long local = Math.min(samplePos, at.end()) - at.start();
+            target.splice(clip, local, local);
         }
+        ctx.getAudioProject().getHistory().record(target);
 
-        mainSegment.setSamples(newSamples);
         ctx.redrawTrack(trackName);
-        ctx.toast("Pasted " + clipSamples[0].length + " samples.");
+        ctx.toast("Pasted " + clip.getFrameLength() + " samples.");
     }
+    // The clip only references ranges of the source stores, which are immutable, so later
+    // edits to the track never leak into it. Large heap-backed clips are moved to a mapped
+    // scratch file so they stop pinning the source arrays.
+    private static void setClipboard(PieceTable slice, AudioFormat format) {
+        AudioSegment clip = new AudioSegment("clip", slice, format);
+        clipboard.set(clip);
+
+        if (slice.getFrameLength() >= SPILL_THRESHOLD_FRAMES && slice.referencesHeap()) {
+            spillExec.submit(() -> {
+                try {
+                    MappedSampleStore spilled = MappedSampleStore.copyOf(slice);
+                    clipboard.compareAndSet(clip, new AudioSegment("clip", spilled, format));
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            });
+        }
+    }
+
     private AudioTrack getTrack(String name) {
         AudioProject project = ctx.getAudioProject();
         if (project == null) return null;
@@ -113,24 +177,4 @@ public class ClipboardModule extends AbstractColleague {
                 .filter(c -> c instanceof AudioTrack && c.getName().equals(name))
                 .findFirst().orElse(null);
     }
-
-    private AudioSegment getMainSegment(String trackName) {
-        AudioTrack track = getTrack(trackName);
-        if (track == null || track.getChildren().isEmpty()) return null;
-        return (AudioSegment) track.getChildren().get(0);
-    }
-
-    private int[] selectionToSampleRange(EditorContext.Selection sel, AudioSegment seg, double canvasWidth) {
-        double L = Math.max(0, Math.min(sel.left(), canvasWidth));
-        double R = Math.max(0, Math.min(sel.right(), canvasWidth));
-        double fracL = L / canvasWidth;
-        double fracR = R / canvasWidth;
-
-        int totalSamples = seg.getSamples()[0].length;
-        int start = (int) Math.floor(totalSamples * fracL);
-        int end   = (int) Math.ceil (totalSamples * fracR);
-        end = Math.min(end, totalSamples);
-        if (end <= start) end = Math.min(start + 1, totalSamples);
-        return new int[]{start, end};
-    }
-}
\ No newline at end of file
+}
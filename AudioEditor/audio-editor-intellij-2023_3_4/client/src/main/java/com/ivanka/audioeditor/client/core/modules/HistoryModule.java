@@ -0,0 +1,56 @@
+package com.ivanka.audioeditor.client.core.modules;
+
+import com.ivanka.audioeditor.client.core.events.EditorEvent;
+import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
+import com.ivanka.audioeditor.client.model.composite.AudioComponent;
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioSegment;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.ui.EditorContext;
+
+public class HistoryModule extends AbstractColleague {
+    private final EditorContext ctx;
+
+    public HistoryModule(EditorContext ctx) { this.ctx = ctx; }
+    @Override public String key() { return "History"; }
+
+    @Override
+    public void receive(EditorEvent e) {
+        switch (e.type) {
+            case EDIT_UNDO -> onUndo();
+            case EDIT_REDO -> onRedo();
+            default -> {}
+        }
+    }
+
+    private void onUndo() {
+        AudioProject project = ctx.getAudioProject();
+        AudioSegment changed = project == null ? null : project.getHistory().undo();
+        if (changed == null) {
+            ctx.toast("Nothing to undo.");
+            return;
+        }
+        redrawOwner(project, changed);
+    }
+
+    private void onRedo() {
+        AudioProject project = ctx.getAudioProject();
+        AudioSegment changed = project == null ? null : project.getHistory().redo();
+        if (changed == null) {
+            ctx.toast("Nothing to redo.");
+            return;
+        }
+        redrawOwner(project, changed);
+    }
+
+    private void redrawOwner(AudioProject project, AudioSegment segment) {
+        for (AudioComponent c : project.getChildren()) {
+            if (c instanceof AudioTrack t && t.getChildren().contains(segment)) {
+                var sel = ctx.getSelections().get(t.getName());
+                if (sel != null) sel.clear();
+                ctx.redrawTrack(t.getName());
+                return;
+            }
+        }
+    }
+}
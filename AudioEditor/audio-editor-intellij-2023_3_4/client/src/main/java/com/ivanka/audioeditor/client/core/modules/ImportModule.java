@@ -10,6 +10,8 @@ import com.ivanka.audioeditor.client.model.composite.AudioProject;
 import com.ivanka.audioeditor.client.model.composite.AudioSegment;
 import com.ivanka.audioeditor.client.model.composite.AudioTrack;
 import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import com.ivanka.audioeditor.client.model.store.PeakPyramid;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
 import com.ivanka.audioeditor.client.net.ApiClient;
 import com.ivanka.audioeditor.client.ui.EditorContext;
 import com.ivanka.audioeditor.client.ui.EditorView;
@@ -86,7 +88,9 @@ public class ImportModule extends AbstractColleague {
                     SegmentDTO dto = mapper.readValue(jsonResponse, SegmentDTO.class);
 
                     AudioFormat[] fmt = new AudioFormat[1];
-                    float[][] samples = PcmUtils.readWavStereo(wavFile, fmt);
+                    float projectRate = ctx.getAudioProject().getFormat().getSampleRate();
+                    SampleStore samples = PcmUtils.readWavToStore(wavFile, projectRate, fmt);
+                    PeakPyramid.warm(samples);
 
                     Platform.runLater(() -> {
                         try {
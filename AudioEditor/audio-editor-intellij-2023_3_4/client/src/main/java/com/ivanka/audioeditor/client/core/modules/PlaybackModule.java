@@ -1,24 +1,40 @@
 package com.ivanka.audioeditor.client.core.modules;
 
+import com.ivanka.audioeditor.client.audio.LoopBuffer;
+import com.ivanka.audioeditor.client.audio.LoopSource;
+import com.ivanka.audioeditor.client.audio.StreamingPlayer;
 import com.ivanka.audioeditor.client.core.events.EditorEvent;
 import com.ivanka.audioeditor.client.core.events.EditorEventType;
 import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
 import com.ivanka.audioeditor.client.model.composite.AudioProject;
 import com.ivanka.audioeditor.client.model.composite.AudioTrack;
-import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import com.ivanka.audioeditor.client.model.composite.TrackTimeline;
 import com.ivanka.audioeditor.client.ui.EditorContext;
 
-import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.ivanka.audioeditor.client.ui.EditorContext.Selection;
+
+// Plays one track at a time, either from a position to the end or, in loop mode, round and round
+// the track's selection. The loop region is prepared once as a LoopBuffer (rendered, or streamed when
+// long) that is kept for the next time the same region is looped; while it plays, the progress tick
+// notices when the track's samples have changed and has the loop-render thread prepare a fresh one,
+// which the player picks up at the next wrap.
 public class PlaybackModule extends AbstractColleague {
     private final EditorContext ctx;
-    private Clip currentClip;
-    private long pausedAtMicros = 0L;
+    private StreamingPlayer player;
+    private long pausedAtFrame = 0L;
     private String playingTrack = null;
+    private ScheduledFuture<?> progressTask;
+
+    private volatile AudioTrack loopTrack;
+    private volatile LoopSource loopSource;
+    private LoopBuffer loopCache;
 
     private final ScheduledExecutorService progressExec =
             Executors.newSingleThreadScheduledExecutor(r -> {
@@ -27,6 +43,14 @@ public class PlaybackModule extends AbstractColleague {
                 return t;
             });
 
+    private final ExecutorService loopRenderExec =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "loop-render");
+                t.setDaemon(true);
+                return t;
+            });
+    private final AtomicBoolean loopRenderQueued = new AtomicBoolean();
+
     public PlaybackModule(EditorContext ctx) { this.ctx = ctx; }
     @Override public String key() { return "Playback"; }
 
@@ -39,67 +63,47 @@ public class PlaybackModule extends AbstractColleague {
         }
     }
 
-    private void onStart(EditorEvent e) {
+    private synchronized void onStart(EditorEvent e) {
         try {
             String trackName = e.get("trackName");
+            if (Boolean.TRUE.equals(e.get("loop"))) {
+                startLoop(trackName);
+                return;
+            }
             Double startAtSec = null;
             Object s = e.get("startAtSec");
             if (s instanceof Number n) startAtSec = n.doubleValue();
 
-            closeClipQuietly();
+            StreamingPlayer current = player;
+            if (current != null && current.isRunning() && !current.isLooping() && trackName.equals(playingTrack)) {
+                if (startAtSec != null) current.seek((long) (startAtSec * current.getSampleRate()));
+                return;
+            }
 
-            AudioProject project = ctx.getAudioProject();
-            if (project == null) return;
-            AudioTrack track = (AudioTrack) project.getChildren().stream()
-                    .filter(c -> c instanceof AudioTrack && c.getName().equals(trackName))
-                    .findFirst().orElse(null);
+            closePlayerQuietly();
 
+            AudioTrack track = getTrack(trackName);
             if (track == null || track.getChildren().isEmpty()) {
                 ctx.alertWarn("No audio data found for this track!");
                 return;
             }
 
-            AudioFormat format = track.getFormat();
-            float[][] samples = PcmUtils.concatTrack(track);
-            byte[] pcm = PcmUtils.toPCM16(samples);
-
-            if (pcm.length == 0) {
+            if (track.getFrameLength() == 0) {
                 ctx.alertWarn("Track is empty.");
                 return;
             }
 
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(pcm);
-                 AudioInputStream audioStream = new AudioInputStream(bais, format, pcm.length / format.getFrameSize())) {
-
-                currentClip = AudioSystem.getClip();
-                currentClip.open(audioStream);
-            }
-
-            long usePos = (startAtSec != null) ? (long) (startAtSec * 1_000_000L) : pausedAtMicros;
-            if (usePos > 0 && usePos < currentClip.getMicrosecondLength()) {
-                currentClip.setMicrosecondPosition(usePos);
-            } else {
-                currentClip.setMicrosecondPosition(0);
-            }
+            float rate = track.getFormat().getSampleRate();
+            long usePos = (startAtSec != null) ? (long) (startAtSec * rate) : pausedAtFrame;
+            if (usePos <= 0 || usePos >= track.getFrameLength()) usePos = 0;
 
+            StreamingPlayer next = new StreamingPlayer(track, rate, () -> onFinished(trackName));
+            player = next;
             playingTrack = trackName;
-            currentClip.addLineListener(ev -> {
-                if (currentClip == null || !playingTrack.equals(trackName)) return;
-
-                if (ev.getType() == LineEvent.Type.STOP) {
-                    long pos = currentClip.getMicrosecondPosition();
-                    long len = currentClip.getMicrosecondLength();
-                    if (len > 0 && pos >= len - 1000) {
-                        send(new EditorEvent(EditorEventType.PLAYBACK_FINISHED)
-                                .with("trackName", playingTrack));
-                        onStop();
-                    }
-                }
-            });
+            next.start(usePos);
 
-            currentClip.start();
-            pausedAtMicros = 0L;
-            progressExec.scheduleAtFixedRate(this::tickProgress, 0, 50, TimeUnit.MILLISECONDS);
+            pausedAtFrame = 0L;
+            progressTask = progressExec.scheduleAtFixedRate(this::tickProgress, 0, 50, TimeUnit.MILLISECONDS);
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -107,16 +111,118 @@ public class PlaybackModule extends AbstractColleague {
         }
     }
 
+    private void startLoop(String trackName) throws Exception {
+        closePlayerQuietly();
+        playingTrack = null;
+
+        AudioTrack track = getTrack(trackName);
+        if (track == null || track.getFrameLength() == 0) {
+            ctx.alertWarn("Import audio to this track first.");
+            return;
+        }
+        Selection sel = ctx.getSelections().get(trackName);
+        if (sel == null || !sel.isActive()) {
+            ctx.alertWarn("Select the region to loop first.");
+            return;
+        }
+
+        long[] range = ctx.selectionToSampleRange(trackName, sel, track.getFrameLength());
+        TrackTimeline timeline = track.getTimeline();
+        LoopBuffer buffer = loopCache;
+        if (buffer == null || !buffer.isCurrent(timeline, range[0], range[1])) {
+            buffer = LoopBuffer.render(timeline, range[0], range[1]);
+            loopCache = buffer;
+        }
+        if (buffer.getFrameLength() == 0) {
+            ctx.alertWarn("The selection holds no audio.");
+            return;
+        }
+
+        LoopSource source = new LoopSource(buffer);
+        StreamingPlayer next = new StreamingPlayer(source, track.getFormat().getSampleRate(), () -> onFinished(trackName));
+        next.setLooping(true);
+        player = next;
+        playingTrack = trackName;
+        loopTrack = track;
+        loopSource = source;
+        next.start(0);
+
+        pausedAtFrame = 0L;
+        progressTask = progressExec.scheduleAtFixedRate(this::tickProgress, 0, 50, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the progress thread and only compares snapshots; the render goes to its own thread so
+    // progress keeps ticking, and the player loops the old buffer until the new one is queued
+    private void checkLoop() {
+        AudioTrack track = loopTrack;
+        LoopSource source = loopSource;
+        if (track == null || source == null) return;
+
+        LoopBuffer buffer = source.getBuffer();
+        if (buffer.isCurrent(track.getTimeline(), buffer.getStart(), buffer.getEnd())) return;
+        if (loopRenderQueued.compareAndSet(false, true)) loopRenderExec.execute(this::refreshLoop);
+    }
+
+    private void refreshLoop() {
+        try {
+            AudioTrack track;
+            LoopSource source;
+            synchronized (this) {
+                track = loopTrack;
+                source = loopSource;
+            }
+            if (track == null || source == null) return;
+
+            LoopBuffer buffer = source.getBuffer();
+            TrackTimeline timeline = track.getTimeline();
+            if (buffer.isCurrent(timeline, buffer.getStart(), buffer.getEnd())) return;
+
+            LoopBuffer fresh = LoopBuffer.render(timeline, buffer.getStart(), buffer.getEnd());
+            synchronized (this) {
+                if (loopSource != source) return;
+                source.queue(fresh);
+                loopCache = fresh;
+            }
+        } catch (Exception ex) {
+            System.out.println("Loop refresh failed: " + ex.getMessage());
+        } finally {
+            loopRenderQueued.set(false);
+        }
+    }
+
+    private void onFinished(String trackName) {
+        synchronized (this) {
+            if (!trackName.equals(playingTrack)) return;
+        }
+        send(new EditorEvent(EditorEventType.PLAYBACK_FINISHED)
+                .with("trackName", trackName));
+        synchronized (this) {
+            pausedAtFrame = 0L;
+            closePlayerQuietly();
+            playingTrack = null;
+        }
+    }
+
     private void tickProgress() {
         try {
-            Clip c = currentClip;
+            StreamingPlayer p = player;
             String tr = playingTrack;
-            if (c == null || tr == null || !c.isRunning()) return;
+            if (p == null || tr == null || !p.isRunning()) return;
 
-            long len = c.getMicrosecondLength();
-            long pos = c.getMicrosecondPosition();
+            long len = p.getFrameLength();
+            long pos = p.getPositionFrame();
             if (len <= 0) return;
 
+            // a loop reports its position inside the buffer; the cursor shows it on the whole track
+            LoopSource source = loopSource;
+            AudioTrack track = loopTrack;
+            if (p.isLooping() && source != null && track != null) {
+                checkLoop();
+                pos += source.getBuffer().getStart();
+                len = track.getFrameLength();
+                if (len <= 0) return;
+            }
+
             double frac = Math.max(0, Math.min(1, (double) pos / (double) len));
 
             send(new EditorEvent(EditorEventType.PLAYBACK_PROGRESS)
@@ -126,28 +232,32 @@ public class PlaybackModule extends AbstractColleague {
         } catch (Exception ignore) {}
     }
 
-    private void onStop() {
-        if (currentClip != null) {
-            try {
-                if (currentClip.isRunning() ||
-                        currentClip.getMicrosecondPosition() < currentClip.getMicrosecondLength() - 1000) {
-                    pausedAtMicros = currentClip.getMicrosecondPosition();
-                } else {
-                    pausedAtMicros = 0L;
-                }
-            } catch (Exception ignored) {
-                pausedAtMicros = 0L;
-            }
+    private synchronized void onStop() {
+        if (player != null) {
+            pausedAtFrame = player.isRunning() && !player.isLooping() ? player.getPositionFrame() : 0L;
         }
-        closeClipQuietly();
+        closePlayerQuietly();
         playingTrack = null;
     }
 
-    private void closeClipQuietly() {
-        if (currentClip != null) {
-            try { currentClip.stop(); } catch (Exception ignore) {}
-            try { currentClip.close(); } catch (Exception ignore) {}
-            currentClip = null;
+    private void closePlayerQuietly() {
+        if (progressTask != null) {
+            progressTask.cancel(false);
+            progressTask = null;
         }
+        if (player != null) {
+            try { player.stop(); } catch (Exception ignore) {}
+            player = null;
+        }
+        loopTrack = null;
+        loopSource = null;
+    }
+
+    private AudioTrack getTrack(String name) {
+        AudioProject project = ctx.getAudioProject();
+        if (project == null) return null;
+        return (AudioTrack) project.getChildren().stream()
+                .filter(c -> c instanceof AudioTrack && c.getName().equals(name))
+                .findFirst().orElse(null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.ivanka.audioeditor.client.core.modules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ivanka.audioeditor.client.audio.Recorder;
+import com.ivanka.audioeditor.client.core.AudioEditor;
+import com.ivanka.audioeditor.client.core.events.EditorEvent;
+import com.ivanka.audioeditor.client.core.events.EditorEventType;
+import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
+import com.ivanka.audioeditor.client.model.ProjectTrack;
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioSegment;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import com.ivanka.audioeditor.client.model.store.PeakPyramid;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+import com.ivanka.audioeditor.client.net.ApiClient;
+import com.ivanka.audioeditor.client.ui.EditorContext;
+import com.ivanka.audioeditor.common.dto.SegmentDTO;
+import javafx.application.Platform;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Records a take onto a track. While recording, the track's waveform is redrawn from the recorder's
+// live peaks; on stop the take becomes a new segment at the position the track cursor had when
+// recording started, and its WAV is uploaded like an import.
+public class RecordingModule extends AbstractColleague {
+
+    private static final long REFRESH_MS = 100;
+
+    private final EditorContext ctx;
+    private final ApiClient api = ApiClient.getInstance();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Recorder recorder;
+    private String recordingTrack;
+    private long startFrame;
+    private ScheduledFuture<?> refreshTask;
+
+    private final ScheduledExecutorService refreshExec =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "recording-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+
+    public RecordingModule(EditorContext ctx) { this.ctx = ctx; }
+    @Override public String key() { return "Recording"; }
+
+    @Override
+    public void receive(EditorEvent e) {
+        switch (e.type) {
+            case RECORD_START -> onStart(e);
+            case RECORD_STOP  -> onStop(e);
+            default -> {}
+        }
+    }
+
+    private synchronized void onStart(EditorEvent e) {
+        String trackName = e.get("trackName");
+        if (recorder != null) {
+            ctx.alertWarn("Already recording on track '" + recordingTrack + "'.");
+            return;
+        }
+        AudioProject project = ctx.getAudioProject();
+        AudioTrack track = getTrack(trackName);
+        if (project == null || track == null) {
+            ctx.alertWarn("Select a track to record on.");
+            return;
+        }
+
+        try {
+            Double cursorFrac = e.get("cursorFrac");
+            double frac = (cursorFrac == null) ? 0.0 : Math.max(0.0, Math.min(1.0, cursorFrac));
+            startFrame = Math.round(track.getFrameLength() * frac);
+
+            File take = File.createTempFile("take-", ".wav");
+            take.deleteOnExit();
+            Recorder next = new Recorder(project.getFormat(), take);
+            next.start();
+
+            recorder = next;
+            recordingTrack = trackName;
+            refreshTask = refreshExec.scheduleAtFixedRate(
+                    () -> Platform.runLater(() -> ctx.drawRecording(trackName, next.getPeaks())),
+                    REFRESH_MS, REFRESH_MS, TimeUnit.MILLISECONDS);
+            ctx.toast("Recording...");
+
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            ctx.alertError("Cannot record: " + ex.getMessage());
+        }
+    }
+
+    private synchronized void onStop(EditorEvent e) {
+        Recorder r = recorder;
+        String trackName = recordingTrack;
+        if (r == null || !trackName.equals(e.get("trackName"))) return;
+        long at = startFrame;
+
+        refreshTask.cancel(false);
+        refreshTask = null;
+        recorder = null;
+        recordingTrack = null;
+
+        new Thread(() -> finishTake(r, trackName, at), "recording-finish").start();
+    }
+
+    // The take is added to the track before it is uploaded, so a failed upload never loses it
+    private void finishTake(Recorder r, String trackName, long at) {
+        File take = null;
+        try {
+            take = r.stop();
+            if (r.getFrameLength() == 0) {
+                Platform.runLater(() -> {
+                    ctx.redrawTrack(trackName);
+                    ctx.toast("Nothing was recorded.");
+                });
+                return;
+            }
+
+            AudioFormat[] fmt = new AudioFormat[1];
+            SampleStore samples = PcmUtils.readWavToStore(take, r.getSampleRate(), fmt);
+            PeakPyramid.warm(samples);
+            AudioSegment segment = new AudioSegment(take.getName(), samples, fmt[0]);
+            segment.setStartFrame(at);
+            double rate = fmt[0].getSampleRate();
+            Map<String, String> position = Map.of(
+                    "startTime", String.valueOf(at / rate),
+                    "endTime", String.valueOf(segment.getEndFrame() / rate));
+
+            Platform.runLater(() -> {
+                AudioTrack track = getTrack(trackName);
+                if (track != null) track.add(segment);
+                ctx.toast("Recorded " + String.format("%.1f", r.getFrameLength() / r.getSampleRate()) + " s.");
+                AudioEditor.getInstance().notifyObservers(
+                        new EditorEvent(EditorEventType.AUDIO_IMPORTED).with("trackName", trackName));
+            });
+
+            try {
+                long trackId = findTrackIdByName(trackName);
+                if (trackId == -1) throw new RuntimeException("Track ID error");
+                String json = api.postMultipart("/segments/import/" + trackId, position, take);
+                SegmentDTO dto = mapper.readValue(json, SegmentDTO.class);
+                // the segment is already on the track, so it is only touched on the FX thread
+                Platform.runLater(() -> {
+                    segment.setId(dto.id());
+                    segment.rename(dto.name());
+                });
+            } catch (Exception uploadEx) {
+                uploadEx.printStackTrace();
+                Platform.runLater(() -> ctx.alertWarn("Take kept locally but not uploaded: " + uploadEx.getMessage()));
+            }
+
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            Platform.runLater(() -> {
+                ctx.redrawTrack(trackName);
+                ctx.alertError("Recording failed: " + ex.getMessage());
+            });
+        } finally {
+            // the samples now live in their own store and the server keeps its own copy
+            if (take != null && !take.delete()) take.deleteOnExit();
+        }
+    }
+
+    private long findTrackIdByName(String name) {
+        var cache = ctx.getTrackCache().get(ctx.getProject().id);
+        if (cache == null) return -1;
+        return cache.stream().filter(t -> t.getTrackName().equals(name))
+                .findFirst().map(ProjectTrack::getId).orElse(-1L);
+    }
+
+    private AudioTrack getTrack(String name) {
+        AudioProject project = ctx.getAudioProject();
+        if (project == null) return null;
+        return (AudioTrack) project.getChildren().stream()
+                .filter(c -> c instanceof AudioTrack && c.getName().equals(name))
+                .findFirst().orElse(null);
+    }
+}
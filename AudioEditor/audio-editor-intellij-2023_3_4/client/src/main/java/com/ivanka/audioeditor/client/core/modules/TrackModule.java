@@ -2,6 +2,8 @@ package com.ivanka.audioeditor.client.core.modules;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ivanka.audioeditor.client.audio.Envelope;
+import com.ivanka.audioeditor.client.audio.TrackControls;
 import com.ivanka.audioeditor.client.core.AudioEditor;
 import com.ivanka.audioeditor.client.core.events.EditorEvent;
 import com.ivanka.audioeditor.client.core.events.EditorEventType;
@@ -9,10 +11,10 @@ import com.ivanka.audioeditor.client.core.mediator.AbstractColleague;
 import com.ivanka.audioeditor.client.model.ProjectTrack;
 import com.ivanka.audioeditor.client.model.composite.AudioComponent;
 import com.ivanka.audioeditor.client.model.composite.AudioProject;
-import com.ivanka.audioeditor.client.model.composite.AudioSegment;
 import com.ivanka.audioeditor.client.model.composite.AudioTrack;
 import com.ivanka.audioeditor.client.net.ApiClient;
 import com.ivanka.audioeditor.client.ui.EditorContext;
+import com.ivanka.audioeditor.client.ui.WaveformLayers;
 import com.ivanka.audioeditor.common.dto.TrackDTO;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -33,7 +35,7 @@ public class TrackModule extends AbstractColleague {
     private final ApiClient api = ApiClient.getInstance();
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final Map<String, Canvas> canvases = new HashMap<>();
+    private final Map<String, WaveformLayers> layers = new HashMap<>();
     private final Map<String, Slider> cursors = new HashMap<>();
     private static final double CANVAS_W = 900;
     private static final double CANVAS_H = 160;
@@ -85,6 +87,8 @@ public class TrackModule extends AbstractColleague {
                 .collect(Collectors.toList());
 
         ctx.getTrackCache().put(pid, list);
+        Map<String, TrackDTO> byName = dtos.stream()
+                .collect(Collectors.toMap(TrackDTO::name, d -> d, (a, b) -> a));
 
         Platform.runLater(() -> {
             AudioProject audioProj = ctx.getAudioProject();
@@ -102,13 +106,22 @@ public class TrackModule extends AbstractColleague {
                 for (ProjectTrack pt : list) {
                     boolean exists = audioProj.getChildren().stream().anyMatch(c -> c.getName().equals(pt.getTrackName()));
                     if (!exists) {
-                        audioProj.add(new AudioTrack(pt.getTrackName()));
+                        AudioTrack track = new AudioTrack(pt.getTrackName());
+                        TrackDTO dto = byName.get(pt.getTrackName());
+                        if (dto != null) {
+                            track.getControls().setVolume(dto.volume());
+                            track.getControls().setMuted(dto.isMuted());
+                            float rate = audioProj.getFormat().getSampleRate();
+                            track.getControls().setGainEnvelope(Envelope.fromDto(dto.automation(), Envelope.GAIN, 1f, rate));
+                            track.getControls().setPanEnvelope(Envelope.fromDto(dto.automation(), Envelope.PAN, 0f, rate));
+                        }
+                        audioProj.add(track);
                     }
                 }
             }
 
             ctx.getTracksPane().getChildren().clear();
-            canvases.clear();
+            layers.clear();
             cursors.clear();
             for (ProjectTrack t : list) {
                 ctx.getTracksPane().getChildren().add(buildTrackBox(t.getTrackName()));
@@ -135,64 +148,65 @@ public class TrackModule extends AbstractColleague {
         title.setTextFill(Color.WHITE);
         title.setOnMouseClicked(ev -> ctx.setActiveTrackName(trackName));
 
-        Canvas canvas = new Canvas(CANVAS_W, CANVAS_H);
-        canvases.put(trackName, canvas);
+        WaveformLayers view = new WaveformLayers(CANVAS_W, CANVAS_H);
+        layers.put(trackName, view);
 
-        setupMouseSelectionAndCursor(trackName, canvas);
-        ctx.drawWaveform(canvas, trackName);
+        setupMouseSelectionAndCursor(trackName, view);
+        ctx.drawWaveform(view, trackName);
+        ctx.drawSelection(view.getSelectionCanvas(), trackName);
         drawCursorLine(trackName);
 
         HBox controls = buildControlBar(trackName);
-        box.getChildren().addAll(title, canvas, controls);
+        box.getChildren().addAll(title, view, controls);
         return box;
     }
 
-    private void setupMouseSelectionAndCursor(String trackName, Canvas canvas) {
-        canvas.setOnMousePressed(ev -> {
+    private void setupMouseSelectionAndCursor(String trackName, WaveformLayers view) {
+        view.setOnMousePressed(ev -> {
             ctx.setActiveTrackName(trackName);
             var sel = ctx.getSelections().computeIfAbsent(trackName, k -> new EditorContext.Selection());
-            double x = clamp(ev.getX(), 0, canvas.getWidth());
+            double x = clamp(ev.getX(), 0, view.getCanvasWidth());
             sel.xStart = x;
             sel.xEnd = x;
-            ctx.redrawTrack(trackName);
+            drawSelection(trackName);
             drawCursorLine(trackName);
         });
-        canvas.setOnMouseDragged(ev -> {
+        view.setOnMouseDragged(ev -> {
             var sel = ctx.getSelections().get(trackName);
             if (sel != null) {
-                sel.xEnd = clamp(ev.getX(), 0, canvas.getWidth());
-                ctx.redrawTrack(trackName);
+                sel.xEnd = clamp(ev.getX(), 0, view.getCanvasWidth());
+                drawSelection(trackName);
                 drawCursorLine(trackName);
             }
         });
-        canvas.setOnMouseReleased(ev -> {
+        view.setOnMouseReleased(ev -> {
             var sel = ctx.getSelections().get(trackName);
             if (sel != null) {
-                sel.xEnd = clamp(ev.getX(), 0, canvas.getWidth());
+                sel.xEnd = clamp(ev.getX(), 0, view.getCanvasWidth());
                 double w = Math.abs(sel.xEnd - sel.xStart);
                 if (w < 3.0) {
                     sel.clear();
                     Slider sl = cursors.get(trackName);
-                    double frac = clamp(ev.getX() / canvas.getWidth(), 0, 1);
+                    double frac = clamp(ev.getX() / view.getCanvasWidth(), 0, 1);
                     if (sl != null) sl.setValue(frac);
                     ctx.setActiveTrackCursor(frac);
                 }
-                ctx.redrawTrack(trackName);
+                drawSelection(trackName);
                 drawCursorLine(trackName);
             }
         });
 
-        canvas.setOnMouseClicked(ev -> {
+        view.setOnMouseClicked(ev -> {
             ctx.setActiveTrackName(trackName);
             if (ev.isControlDown()) {
-                double frac = clamp(ev.getX() / canvas.getWidth(), 0, 1);
+                double frac = clamp(ev.getX() / view.getCanvasWidth(), 0, 1);
                 Slider sl = cursors.get(trackName);
                 if (sl != null) sl.setValue(frac);
                 ctx.setActiveTrackCursor(frac);
 
-                AudioSegment seg = getMainSegment(trackName);
-                if (seg != null && seg.getDurationSec() > 0) {
-                    double sec = frac * seg.getDurationSec();
+                AudioTrack track = getTrack(trackName);
+                if (track != null && track.getDurationSec() > 0) {
+                    double sec = frac * track.getDurationSec();
                     AudioEditor.getInstance().notifyObservers(
                             new EditorEvent(EditorEventType.PLAYBACK_START)
                                     .with("trackName", trackName)
@@ -224,6 +238,11 @@ public class TrackModule extends AbstractColleague {
 
         Button btnPlay = new Button("Play");
         Button btnStop = new Button("Stop");
+        ToggleButton btnLoop = new ToggleButton("Loop");
+        btnLoop.setTooltip(new Tooltip("Loop the selection"));
+        ToggleButton btnRec = new ToggleButton("Rec");
+        btnRec.setTooltip(new Tooltip("Record a take at the cursor"));
+        btnRec.setStyle("-fx-text-fill: #ef4444; -fx-font-weight: bold;");
         Button btnCopy = new Button("Copy");
         Button btnCut = new Button("Cut");
         Button btnPaste = new Button("Paste");
@@ -233,6 +252,27 @@ public class TrackModule extends AbstractColleague {
         speed.getItems().addAll("0.5x","1x","1.5x","2x");
         speed.setValue("1x");
 
+        ChoiceBox<String> gain = new ChoiceBox<>();
+        gain.getItems().addAll("-6dB","-3dB","0dB","+3dB","+6dB");
+        gain.setValue("0dB");
+
+        MenuButton automation = new MenuButton("Auto");
+        automation.setTooltip(new Tooltip("Automation over the selection"));
+        String[][] shapes = {
+                {"Track fade in", "fadeIn"}, {"Track fade out", "fadeOut"}, {"Pan left to right", "panSweep"},
+                {"Clip fade in", "clipFadeIn"}, {"Clip fade out", "clipFadeOut"}, {"Clear automation", "clear"}};
+        for (String[] s : shapes) {
+            MenuItem item = new MenuItem(s[0]);
+            item.setOnAction(ev -> {
+                ctx.setActiveTrackName(trackName);
+                AudioEditor.getInstance().notifyObservers(
+                        new EditorEvent(EditorEventType.AUTOMATION_EDIT)
+                                .with("trackName", trackName)
+                                .with("shape", s[1]));
+            });
+            automation.getItems().add(item);
+        }
+
         Slider cursor = new Slider(0, 1, 0);
         cursor.setPrefWidth(200);
         cursors.put(trackName, cursor);
@@ -240,34 +280,80 @@ public class TrackModule extends AbstractColleague {
         Label timeLabel = new Label("00:00.000");
         timeLabel.setTextFill(Color.web("#cbd5e1"));
 
+        TrackControls mix = getTrackControls(trackName);
+        ToggleButton btnMute = new ToggleButton("M");
+        btnMute.setTooltip(new Tooltip("Mute"));
+        ToggleButton btnSolo = new ToggleButton("S");
+        btnSolo.setTooltip(new Tooltip("Solo"));
+        Slider volume = new Slider(0, 2, 1);
+        volume.setPrefWidth(80);
+        volume.setTooltip(new Tooltip("Volume"));
+        if (mix != null) {
+            btnMute.setSelected(mix.isMuted());
+            btnSolo.setSelected(mix.isSolo());
+            volume.setValue(mix.getVolume());
+            btnMute.selectedProperty().addListener((obs, o, n) -> mix.setMuted(n));
+            btnSolo.selectedProperty().addListener((obs, o, n) -> mix.setSolo(n));
+            volume.valueProperty().addListener((obs, o, n) -> mix.setVolume(n.doubleValue()));
+        }
+
         btnPlay.setOnAction(ev -> {
             ctx.setActiveTrackName(trackName);
+            btnLoop.setSelected(false);
             var editor = AudioEditor.getInstance();
-            AudioSegment seg = getMainSegment(trackName);
-            if (seg == null || seg.getDurationSec() <= 0) { ctx.alertWarn("Import audio to this track first."); return; }
+            AudioTrack track = getTrack(trackName);
+            if (track == null || track.getDurationSec() <= 0) { ctx.alertWarn("Import audio to this track first."); return; }
 
             double frac = cursor.getValue();
             ctx.setActiveTrackCursor(frac);
-            double sec = frac * seg.getDurationSec();
+            double sec = frac * track.getDurationSec();
 
             editor.notifyObservers(new EditorEvent(EditorEventType.PLAYBACK_START)
                     .with("trackName", trackName)
                     .with("startAtSec", sec));
         });
 
-        btnStop.setOnAction(ev ->
+        btnStop.setOnAction(ev -> {
+            btnLoop.setSelected(false);
+            AudioEditor.getInstance().notifyObservers(
+                    new EditorEvent(EditorEventType.PLAYBACK_STOP).with("trackName", trackName));
+        });
+
+        btnLoop.setOnAction(ev -> {
+            ctx.setActiveTrackName(trackName);
+            if (btnLoop.isSelected()) {
                 AudioEditor.getInstance().notifyObservers(
-                        new EditorEvent(EditorEventType.PLAYBACK_STOP).with("trackName", trackName))
-        );
+                        new EditorEvent(EditorEventType.PLAYBACK_START)
+                                .with("trackName", trackName)
+                                .with("loop", true));
+            } else {
+                AudioEditor.getInstance().notifyObservers(
+                        new EditorEvent(EditorEventType.PLAYBACK_STOP).with("trackName", trackName));
+            }
+        });
+
+        btnRec.setOnAction(ev -> {
+            ctx.setActiveTrackName(trackName);
+            if (btnRec.isSelected()) {
+                AudioEditor.getInstance().notifyObservers(
+                        new EditorEvent(EditorEventType.RECORD_START)
+                                .with("trackName", trackName)
+                                .with("cursorFrac", cursor.getValue()));
+            } else {
+                AudioEditor.getInstance().notifyObservers(
+                        new EditorEvent(EditorEventType.RECORD_STOP).with("trackName", trackName));
+            }
+        });
 
         cursor.setOnMouseReleased(ev -> {
             ctx.setActiveTrackName(trackName);
-            AudioSegment seg = getMainSegment(trackName);
-            if (seg == null || seg.getDurationSec() <= 0) return;
+            btnLoop.setSelected(false);
+            AudioTrack track = getTrack(trackName);
+            if (track == null || track.getDurationSec() <= 0) return;
 
             double frac = cursor.getValue();
             ctx.setActiveTrackCursor(frac);
-            double sec = frac * seg.getDurationSec();
+            double sec = frac * track.getDurationSec();
 
             AudioEditor.getInstance().notifyObservers(
                     new EditorEvent(EditorEventType.PLAYBACK_START)
@@ -302,6 +388,15 @@ public class TrackModule extends AbstractColleague {
                             .with("trackName", trackName)
                             .with("fx", "atempo:" + k));
         });
+        gain.setOnAction(ev -> {
+            ctx.setActiveTrackName(trackName);
+            double db = Double.parseDouble(gain.getValue().replace("dB","").replace("+",""));
+            if (db == 0) return;
+            AudioEditor.getInstance().notifyObservers(
+                    new EditorEvent(EditorEventType.WAVEFORM_REDRAW)
+                            .with("trackName", trackName)
+                            .with("fx", "gain:" + db));
+        });
 
         btnPaste.setOnAction(ev -> {
             ctx.setActiveTrackName(trackName);
@@ -321,17 +416,18 @@ public class TrackModule extends AbstractColleague {
             if (trackName.equals(ctx.getActiveTrackName())) {
                 ctx.setActiveTrackCursor(n.doubleValue());
             }
-            AudioSegment seg = getMainSegment(trackName);
-            double posSec = (seg == null ? 0.0 : n.doubleValue() * seg.getDurationSec());
+            AudioTrack track = getTrack(trackName);
+            double posSec = (track == null ? 0.0 : n.doubleValue() * track.getDurationSec());
             timeLabel.setText(formatTime(posSec));
             drawCursorLine(trackName);
         });
 
         bar.getChildren().addAll(
                 btnDel, new Separator(),
-                btnPlay, btnStop, new Separator(),
+                btnMute, btnSolo, volume, new Separator(),
+                btnPlay, btnStop, btnLoop, btnRec, new Separator(),
                 btnCopy, btnCut, btnPaste, new Separator(),
-                btnRev, new Label("Speed:"), speed, new Separator(),
+                btnRev, new Label("Speed:"), speed, new Label("Gain:"), gain, automation, new Separator(),
                 new Label("Cursor:"), cursor, timeLabel
         );
         return bar;
@@ -414,26 +510,23 @@ public class TrackModule extends AbstractColleague {
         return String.format(Locale.US, "%02d:%02d.%03d", mins, secs, msec);
     }
 
-    private void drawCursorLine(String trackName) {
-        Canvas cv = canvases.get(trackName);
-        if (cv == null) return;
-
-        AudioSegment seg = getMainSegment(trackName);
+    private void drawSelection(String trackName) {
+        WaveformLayers view = layers.get(trackName);
+        if (view != null) ctx.drawSelection(view.getSelectionCanvas(), trackName);
+    }
 
-        ctx.drawWaveform(cv, trackName);
+    private void drawCursorLine(String trackName) {
+        WaveformLayers view = layers.get(trackName);
+        if (view == null) return;
+        Canvas cv = view.getCursorCanvas();
 
-        if (seg == null || seg.getDurationSec() <= 0) {
-            GraphicsContext g = cv.getGraphicsContext2D();
-            g.setStroke(Color.WHITE);
-            g.setLineWidth(1.0);
-            g.strokeLine(0, 0, 0, cv.getHeight());
-            return;
-        }
+        GraphicsContext g = cv.getGraphicsContext2D();
+        g.clearRect(0, 0, cv.getWidth(), cv.getHeight());
 
+        AudioTrack track = getTrack(trackName);
         Slider sl = cursors.get(trackName);
-        double x = sl == null ? 0 : sl.getValue() * cv.getWidth();
+        double x = (track == null || track.getDurationSec() <= 0 || sl == null) ? 0 : sl.getValue() * cv.getWidth();
 
-        GraphicsContext g = cv.getGraphicsContext2D();
         g.setStroke(Color.WHITE);
         g.setLineWidth(1.0);
         g.strokeLine(x, 0, x, cv.getHeight());
@@ -449,9 +542,8 @@ public class TrackModule extends AbstractColleague {
         return (AudioTrack) project.getChildren().stream().filter(c -> c instanceof AudioTrack && c.getName().equals(name)).findFirst().orElse(null);
     }
 
-    private AudioSegment getMainSegment(String trackName) {
+    private TrackControls getTrackControls(String trackName) {
         AudioTrack track = getTrack(trackName);
-        if (track == null || track.getChildren().isEmpty()) return null;
-        return (AudioSegment) track.getChildren().get(0);
+        return track == null ? null : track.getControls();
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.ivanka.audioeditor.client.model.composite;
 
-import javax.sound.sampled.*;
+import javax.sound.sampled.AudioFormat;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -11,16 +11,6 @@ public abstract class AbstractAudioComposite implements AudioComponent {
     protected String name;
     protected final List<AudioComponent> children = new ArrayList<>();
 
-    protected AudioFormat format = new AudioFormat(
-            44100,
-            16,
-            1,
-            true,
-            false
-    );
-
-    protected volatile SourceDataLine line;
-
     protected AbstractAudioComposite(String name) {
         this.name = name;
     }
@@ -30,9 +20,6 @@ public abstract class AbstractAudioComposite implements AudioComponent {
 
     @Override public void add(AudioComponent c) {
         children.add(c);
-        if (c.getFormat() != null) {
-            this.format = c.getFormat();
-        }
     }
 
     @Override public void remove(AudioComponent c) { children.remove(c); }
@@ -56,20 +43,8 @@ public abstract class AbstractAudioComposite implements AudioComponent {
 
     @Override
     public void stop() {
-        SourceDataLine lineToStop = this.line;
-
-        if (lineToStop != null) {
-            try {
-                lineToStop.stop();
-                lineToStop.close();
-            } catch (Exception ignore) {
-
-            } finally {
-                if (this.line == lineToStop) {
-                    this.line = null;
-                }
-            }
-        }
+        for (AudioComponent c : children)
+            c.stop();
     }
 
     @Override
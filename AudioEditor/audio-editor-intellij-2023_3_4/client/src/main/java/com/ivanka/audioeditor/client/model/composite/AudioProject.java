@@ -1,17 +1,33 @@
 package com.ivanka.audioeditor.client.model.composite;
 
+import com.ivanka.audioeditor.client.audio.LookaheadLimiter;
+import com.ivanka.audioeditor.client.audio.OfflineRenderer;
+import com.ivanka.audioeditor.client.audio.ProjectMixer;
+import com.ivanka.audioeditor.client.audio.StreamingPlayer;
+import com.ivanka.audioeditor.client.audio.WavStreamWriter;
+
 import javax.sound.sampled.*;
 import java.io.File;
+import java.util.concurrent.ForkJoinPool;
 
 public class AudioProject extends AbstractAudioComposite {
 
+    private static final int RENDER_THREADS = Integer.getInteger("audioeditor.render.threads",
+            Runtime.getRuntime().availableProcessors());
+
     private final AudioFormat projectFormat;
+    private final EditHistory history = new EditHistory(this);
+    private volatile StreamingPlayer player;
 
     public AudioProject(String name) {
         super(name);
         this.projectFormat = PcmUtils.getStandardFormat();
     }
 
+    public EditHistory getHistory() {
+        return history;
+    }
+
     @Override
     public AudioFormat getFormat() {
         return this.projectFormat;
@@ -24,47 +40,37 @@ public class AudioProject extends AbstractAudioComposite {
                 .max().orElse(0.0);
     }
 
+    // Returns at once; the mix is rendered and written on the player's own threads
     @Override
     public void play() {
         stop();
         try {
-            float[][] mix = PcmUtils.mixProject(this);
-            byte[] pcm = PcmUtils.toPCM16(mix);
-
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, projectFormat);
-
-            SourceDataLine localLine = (SourceDataLine) AudioSystem.getLine(info);
-            this.line = localLine;
-
-            localLine.open(projectFormat);
-            localLine.start();
-            localLine.write(pcm, 0, pcm.length);
-            localLine.drain();
-
+            StreamingPlayer next = new StreamingPlayer(new ProjectMixer(this), projectFormat.getSampleRate(), () -> {});
+            player = next;
+            next.start(0);
         } catch (Exception ex) {
             System.out.println("Playback interrupted (or error): " + ex.getMessage());
-
-        } finally {
-            if (this.line != null) {
-                try {
-                    this.line.close();
-                } catch (Exception ignore) {}
-                this.line = null;
-            }
         }
     }
 
     @Override
     public void stop() {
+        StreamingPlayer p = player;
+        if (p != null) {
+            p.stop();
+            player = null;
+        }
         super.stop();
-
-        for (AudioComponent c : children)
-            c.stop();
     }
 
     @Override
     public void exportTo(File out, String ext) throws Exception {
-        float[][] mix = PcmUtils.mixProject(this);
-        PcmUtils.writeWav(mix, this.projectFormat, out);
+        ForkJoinPool pool = new ForkJoinPool(RENDER_THREADS);
+        try (WavStreamWriter writer = new WavStreamWriter(out, this.projectFormat)) {
+            OfflineRenderer renderer = new OfflineRenderer(this, pool);
+            renderer.render(writer, LookaheadLimiter.forOutput(projectFormat.getSampleRate()));
+        } finally {
+            pool.shutdownNow();
+        }
     }
 }
\ No newline at end of file
@@ -1,20 +1,37 @@
 package com.ivanka.audioeditor.client.model.composite;
 
-import javax.sound.sampled.*;
+import com.ivanka.audioeditor.client.audio.Envelope;
+import com.ivanka.audioeditor.client.audio.FrameSource;
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import com.ivanka.audioeditor.client.audio.StreamingPlayer;
+import com.ivanka.audioeditor.client.model.store.EditList;
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+import com.ivanka.audioeditor.client.model.store.PieceTable;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+import com.ivanka.audioeditor.client.model.store.StretchedStore;
+
+import javax.sound.sampled.AudioFormat;
 import java.io.File;
 
-public class AudioSegment implements AudioComponent {
+public class AudioSegment implements AudioComponent, FrameSource {
 
     private long id;
     private String name;
-    private float[][] samples;
+    private volatile EditList edits;
     private final AudioFormat format;
+    private volatile long startFrame = 0;
+    private volatile Runnable timelineListener;
+    private volatile Envelope gainEnvelope = Envelope.flat(1f);
 
-    private volatile SourceDataLine line;
+    private volatile StreamingPlayer player;
 
     public AudioSegment(String name, float[][] samples, AudioFormat fmt) {
+        this(name, new HeapSampleStore(samples), fmt);
+    }
+
+    public AudioSegment(String name, SampleStore store, AudioFormat fmt) {
         this.name = name;
-        this.samples = samples;
+        this.edits = new EditList(PieceTable.of(store));
         this.format = fmt;
     }
 
@@ -22,63 +39,139 @@ public class AudioSegment implements AudioComponent {
     public void setId(long id) { this.id = id; }
 
     public void setSamples(float[][] newSamples) {
+        setStore(new HeapSampleStore(newSamples));
+    }
+
+    public void setStore(SampleStore newStore) {
         stop();
-        this.samples = newSamples;
+        this.edits = new EditList(PieceTable.of(newStore));
+        timelineChanged();
+    }
+
+    // Position of the first frame on the track's timeline
+    public long getStartFrame() { return startFrame; }
+
+    public void setStartFrame(long frame) {
+        this.startFrame = Math.max(0, frame);
+        timelineChanged();
+    }
+
+    public long getEndFrame() { return startFrame + getFrameLength(); }
+
+    // Clip gain automation, in frames from the segment's own start; applied when the track mixes it
+    public Envelope getGainEnvelope() { return gainEnvelope; }
+    public void setGainEnvelope(Envelope envelope) {
+        this.gainEnvelope = envelope;
+        timelineChanged();
+    }
+
+    // The owning track listens for moves and length changes to keep its timeline index current
+    void setTimelineListener(Runnable listener) { this.timelineListener = listener; }
+
+    public EditList getEdits() { return edits; }
+
+    public PieceTable getPieces() { return edits.resolve(); }
+
+    public PieceTable slice(long fromFrame, long toFrame) {
+        return getPieces().slice(fromFrame, toFrame);
+    }
+
+    public void cut(long fromFrame, long toFrame) {
+        edit(new EditList.Cut(fromFrame, toFrame));
+    }
+
+    public void splice(PieceTable clip, long fromFrame, long toFrame) {
+        edit(new EditList.Insert(clip, fromFrame, toFrame));
+    }
+
+    public void reverse(long fromFrame, long toFrame) {
+        edit(new EditList.Reverse(fromFrame, toFrame));
+    }
+
+    public void gain(long fromFrame, long toFrame, float factor) {
+        edit(new EditList.Gain(fromFrame, toFrame, factor));
+    }
+
+    // The new length is known immediately; the stretched audio is rendered a block at a time as it is read
+    public void stretch(long fromFrame, long toFrame, double tempo) {
+        StretchedStore stretched = new StretchedStore(slice(fromFrame, toFrame), tempo, format.getSampleRate());
+        stretched.prefetch();
+        edit(new EditList.Tempo(fromFrame, toFrame, stretched));
+    }
+
+    public boolean undo() {
+        stop();
+        boolean changed = edits.undo();
+        timelineChanged();
+        return changed;
+    }
+
+    public boolean redo() {
+        stop();
+        boolean changed = edits.redo();
+        timelineChanged();
+        return changed;
+    }
+
+    private void edit(EditList.Edit e) {
+        stop();
+        edits.add(e);
+        timelineChanged();
+    }
+
+    private void timelineChanged() {
+        Runnable l = timelineListener;
+        if (l != null) l.run();
     }
 
     @Override
     public void play() {
         stop();
         try {
-            byte[] buf = PcmUtils.toPCM16(samples);
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-            SourceDataLine localLine = (SourceDataLine) AudioSystem.getLine(info);
-            this.line = localLine;
-            localLine.open(format);
-            localLine.start();
-            localLine.write(buf, 0, buf.length);
-            localLine.drain();
+            StreamingPlayer next = new StreamingPlayer(this, format.getSampleRate(), () -> {});
+            player = next;
+            next.start(0);
         } catch (Exception ex) {
             System.out.println("Segment playback interrupted: " + ex.getMessage());
-        } finally {
-            if (this.line != null) {
-                try { this.line.close(); } catch (Exception ignore) {}
-                this.line = null;
-            }
         }
     }
 
     @Override
     public void stop() {
-        SourceDataLine lineToStop = this.line;
-        if (lineToStop != null) {
-            try {
-                lineToStop.stop();
-                lineToStop.close();
-            } catch (Exception ignore) {
-            } finally {
-                if (this.line == lineToStop) {
-                    this.line = null;
-                }
-            }
+        StreamingPlayer p = player;
+        if (p != null) {
+            p.stop();
+            player = null;
         }
     }
 
     @Override
     public double getDurationSec() {
-        if (samples == null || samples.length == 0) return 0.0;
-        return samples[0].length / format.getSampleRate();
+        return getFrameLength() / format.getSampleRate();
     }
 
     @Override
     public void exportTo(File out, String formatExt) throws Exception {
-        PcmUtils.writeWav(this.samples, this.format, out);
+        PcmUtils.writeWav(getPieces(), this.format, out);
     }
 
     @Override public String getName() { return name; }
     @Override public void rename(String newName) { this.name = newName; }
 
-    public float[][] getSamples() { return samples; }
+    public float[][] getSamples() { return getPieces().toArray(); }
+
+    @Override
+    public long getFrameLength() { return getPieces().getFrameLength(); }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return getPieces().read(fromFrame, dst, dstOffset, frames);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return getPieces().readRealtime(fromFrame, dst, dstOffset, frames, scratch);
+    }
 
     @Override
     public AudioFormat getFormat() { return format; }
@@ -1,24 +1,94 @@
 package com.ivanka.audioeditor.client.model.composite;
 
+import com.ivanka.audioeditor.client.audio.FrameSource;
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import com.ivanka.audioeditor.client.audio.StreamingPlayer;
+import com.ivanka.audioeditor.client.audio.TrackControls;
+
 import javax.sound.sampled.AudioFormat;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AudioTrack extends AbstractAudioComposite implements FrameSource {
 
-public class AudioTrack extends AbstractAudioComposite {
+    private final TrackControls controls = new TrackControls();
+    private final Object timelineLock = new Object();
+    private final Runnable invalidate = this::invalidateTimeline;
+    private long revision = 0;
+    private volatile TrackTimeline timeline;
+    private volatile StreamingPlayer player;
 
     public AudioTrack(String name) {
         super(name);
     }
 
+    public TrackControls getControls() {
+        return controls;
+    }
+
+    @Override
+    public void add(AudioComponent c) {
+        super.add(c);
+        if (c instanceof AudioSegment seg) seg.setTimelineListener(invalidate);
+        invalidateTimeline();
+    }
+
+    @Override
+    public void remove(AudioComponent c) {
+        super.remove(c);
+        if (c instanceof AudioSegment seg) seg.setTimelineListener(null);
+        invalidateTimeline();
+    }
+
+    // Current clip layout; rebuilt after segments are added, removed, moved or edited
+    public TrackTimeline getTimeline() {
+        TrackTimeline t = timeline;
+        if (t != null) return t;
+
+        long rev;
+        synchronized (timelineLock) {
+            rev = revision;
+        }
+        List<AudioSegment> segments = new ArrayList<>();
+        for (AudioComponent c : new ArrayList<>(children)) {
+            if (c instanceof AudioSegment seg) segments.add(seg);
+        }
+        t = new TrackTimeline(segments);
+        synchronized (timelineLock) {
+            if (revision == rev) timeline = t;
+        }
+        return t;
+    }
+
+    private void invalidateTimeline() {
+        synchronized (timelineLock) {
+            revision++;
+            timeline = null;
+        }
+    }
+
+    // Plays the timeline, gaps and overlaps included, on the player's own threads
     @Override
     public void play() {
-        for (AudioComponent c : children)
-            c.play();
+        stop();
+        try {
+            StreamingPlayer next = new StreamingPlayer(this, getFormat().getSampleRate(), () -> {});
+            player = next;
+            next.start(0);
+        } catch (Exception ex) {
+            System.out.println("Track playback failed: " + ex.getMessage());
+        }
     }
 
     @Override
     public void stop() {
-        for (AudioComponent c : children)
-            c.stop();
+        StreamingPlayer p = player;
+        if (p != null) {
+            p.stop();
+            player = null;
+        }
+        super.stop();
     }
 
     @Override
@@ -26,6 +96,26 @@ public class AudioTrack extends AbstractAudioComposite {
         PcmUtils.concatTrackToFile(this, out, formatExt);
     }
 
+    @Override
+    public long getFrameLength() {
+        return getTimeline().getFrameLength();
+    }
+
+    @Override
+    public double getDurationSec() {
+        return getFrameLength() / getFormat().getSampleRate();
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return getTimeline().read(fromFrame, dst, dstOffset, frames);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return getTimeline().readRealtime(fromFrame, dst, dstOffset, frames, scratch);
+    }
+
     @Override
     public AudioFormat getFormat() {
         for (AudioComponent c : children) {
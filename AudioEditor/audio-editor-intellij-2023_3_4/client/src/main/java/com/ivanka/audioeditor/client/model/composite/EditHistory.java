@@ -0,0 +1,141 @@
+package com.ivanka.audioeditor.client.model.composite;
+
+import com.ivanka.audioeditor.client.model.store.EditList;
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Project-wide undo order over the segments' edit lists. An entry only names the segment and the
+// edit list it was made in; the edit itself stays in that list. Heap audio that only the history
+// still references is moved to scratch files, oldest first, once it exceeds the memory budget.
+public class EditHistory {
+
+    private static final int MAX_DEPTH = Integer.getInteger("audioeditor.undo.depth", 100);
+    private static final long BUDGET_BYTES = Long.getLong("audioeditor.undo.budgetMb", 256) << 20;
+
+    private static final ExecutorService spillExec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "undo-spill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Entry(AudioSegment segment, EditList edits) {
+        boolean isStale() { return segment.getEdits() != edits; }
+    }
+
+    private final AudioProject project;
+    private final Deque<Entry> undo = new ArrayDeque<>();
+    private final Deque<Entry> redo = new ArrayDeque<>();
+
+    public EditHistory(AudioProject project) {
+        this.project = project;
+    }
+
+    // Call after each edit made through the segment
+    public synchronized void record(AudioSegment segment) {
+        for (Entry e : redo) e.edits().clearRedo();
+        redo.clear();
+        undo.push(new Entry(segment, segment.getEdits()));
+
+        while (undo.size() > MAX_DEPTH) {
+            Entry oldest = undo.removeLast();
+            if (!oldest.isStale()) oldest.edits().dropOldest();
+        }
+        enforceBudget();
+    }
+
+    // Returns the segment that changed, or null when there is nothing to undo
+    public synchronized AudioSegment undo() {
+        while (!undo.isEmpty()) {
+            Entry e = undo.pop();
+            if (e.isStale() || !e.segment().undo()) continue;
+            redo.push(e);
+            enforceBudget();
+            return e.segment();
+        }
+        return null;
+    }
+
+    public synchronized AudioSegment redo() {
+        while (!redo.isEmpty()) {
+            Entry e = redo.pop();
+            if (e.isStale() || !e.segment().redo()) continue;
+            undo.push(e);
+            return e.segment();
+        }
+        return null;
+    }
+
+    public synchronized boolean canUndo() {
+        return undo.stream().anyMatch(e -> !e.isStale());
+    }
+
+    public synchronized boolean canRedo() {
+        return redo.stream().anyMatch(e -> !e.isStale());
+    }
+
+    public synchronized void clear() {
+        undo.clear();
+        redo.clear();
+    }
+
+    private void enforceBudget() {
+        List<Entry> entries = new ArrayList<>(undo.size() + redo.size());
+        undo.descendingIterator().forEachRemaining(entries::add);
+        entries.addAll(redo);
+        List<AudioSegment> segments = new ArrayList<>();
+        for (AudioComponent c : project.getChildren()) {
+            if (!(c instanceof AudioTrack t)) continue;
+            for (AudioComponent s : t.getChildren()) {
+                if (s instanceof AudioSegment seg) segments.add(seg);
+            }
+        }
+        spillExec.submit(() -> spillHistoryOnly(entries, segments));
+    }
+
+    private static void spillHistoryOnly(List<Entry> entries, List<AudioSegment> segments) {
+        Set<SampleStore> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AudioSegment seg : segments) EditList.collectStores(seg.getPieces(), live);
+
+        Set<SampleStore> held = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<SampleStore> heldInOrder = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.isStale()) continue;
+            List<SampleStore> stores = new ArrayList<>();
+            e.edits().collectStores(stores);
+            for (SampleStore s : stores) {
+                if (held.add(s)) heldInOrder.add(s);
+            }
+        }
+
+        List<HeapSampleStore> candidates = new ArrayList<>();
+        long bytes = 0;
+        for (SampleStore s : heldInOrder) {
+            if (s instanceof HeapSampleStore h && !live.contains(h) && h.getHeapBytes() > 0) {
+                candidates.add(h);
+                bytes += h.getHeapBytes();
+            }
+        }
+
+        for (HeapSampleStore h : candidates) {
+            if (bytes <= BUDGET_BYTES) break;
+            long size = h.getHeapBytes();
+            try {
+                h.spill();
+                bytes -= size;
+            } catch (Exception ex) {
+                System.out.println("Undo history spill failed: " + ex.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ivanka.audioeditor.client.model.composite;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+// Static interval tree over half-open [start, end) ranges. Entries are sorted by start and laid out
+// as an implicit balanced tree in which every node also keeps the largest end below it, so a range
+// query visits O(log n + k) nodes and reports matches in start order.
+final class IntervalIndex<T> {
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnd;
+    private final List<T> values;
+    private final long end;
+
+    IntervalIndex(List<T> items, ToLongFunction<T> start, ToLongFunction<T> end) {
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong(start));
+        int n = sorted.size();
+        this.values = sorted;
+        this.starts = new long[n];
+        this.ends = new long[n];
+        this.maxEnd = new long[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = start.applyAsLong(sorted.get(i));
+            ends[i] = end.applyAsLong(sorted.get(i));
+        }
+        this.end = build(0, n);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    // Largest end of any entry, Long.MIN_VALUE when empty
+    long getEnd() {
+        return end;
+    }
+
+    void forEachOverlapping(long from, long to, Consumer<T> action) {
+        if (from < to) visit(0, values.size(), from, to, action);
+    }
+
+    List<T> overlapping(long from, long to) {
+        List<T> out = new ArrayList<>();
+        forEachOverlapping(from, to, out::add);
+        return out;
+    }
+
+    T get(int i) {
+        return values.get(i);
+    }
+
+    // Writes the indices of entries overlapping [from, to) into out in start order and returns how many
+    // there are; when that exceeds out.length only the first out.length are written
+    int overlapping(long from, long to, int[] out) {
+        return from < to ? collect(0, values.size(), from, to, out, 0) : 0;
+    }
+
+    private long build(int lo, int hi) {
+        if (lo >= hi) return Long.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        long m = Math.max(ends[mid], Math.max(build(lo, mid), build(mid + 1, hi)));
+        maxEnd[mid] = m;
+        return m;
+    }
+
+    private void visit(int lo, int hi, long from, long to, Consumer<T> action) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] <= from) return;
+        visit(lo, mid, from, to, action);
+        if (starts[mid] >= to) return;
+        if (ends[mid] > from) action.accept(values.get(mid));
+        visit(mid + 1, hi, from, to, action);
+    }
+
+    private int collect(int lo, int hi, long from, long to, int[] out, int count) {
+        if (lo >= hi) return count;
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] <= from) return count;
+        count = collect(lo, mid, from, to, out, count);
+        if (starts[mid] >= to) return count;
+        if (ends[mid] > from) {
+            if (count < out.length) out[count] = mid;
+            count++;
+        }
+        return collect(mid + 1, hi, from, to, out, count);
+    }
+}
@@ -1,14 +1,28 @@
 package com.ivanka.audioeditor.client.model.composite;
 
+import com.ivanka.audioeditor.client.audio.BufferPool;
+import com.ivanka.audioeditor.client.audio.PcmDecoder;
+import com.ivanka.audioeditor.client.audio.ProjectMixer;
+import com.ivanka.audioeditor.client.audio.WavStreamWriter;
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+import com.ivanka.audioeditor.client.model.store.MappedSampleStore;
+import com.ivanka.audioeditor.client.model.store.ResampledStore;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
+
 import javax.sound.sampled.*;
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
 
 public class PcmUtils {
 
+    // Largest import decoded onto the chunked heap store; -Daudioeditor.import.heapMb overrides a quarter of -Xmx
+    private static final long HEAP_IMPORT_BUDGET =
+            Long.getLong("audioeditor.import.heapMb", Runtime.getRuntime().maxMemory() / 4 >> 20) << 20;
+
+    // Keep 8- and 16-bit sources as shorts on the heap; lossless, and half the size of float
+    private static final boolean STORE_PCM16 =
+            Boolean.parseBoolean(System.getProperty("audioeditor.store.pcm16", "true"));
+
     public static AudioFormat getStandardFormat() {
         return new AudioFormat(
                 AudioFormat.Encoding.PCM_SIGNED,
@@ -23,239 +37,129 @@ public class PcmUtils {
 
     public static float[][] readWavStereo(File wavFile, AudioFormat[] fmtOut) throws Exception {
         try (AudioInputStream in = AudioSystem.getAudioInputStream(wavFile)) {
-            AudioFormat baseFormat = in.getFormat();
-
-            if (fmtOut != null && fmtOut.length > 0)
-                fmtOut[0] = baseFormat;
-
-            int channels = baseFormat.getChannels();
-            int sampleSize = baseFormat.getSampleSizeInBits();
-
-            byte[] pcmBytes = in.readAllBytes();
-            int numFrames = pcmBytes.length / baseFormat.getFrameSize();
+            PcmDecoder decoder = decoder(in, fmtOut);
+            return decodeToHeap(decoder, STORE_PCM16 && decoder.fitsPcm16()).toArray();
+        }
+    }
 
-            float[][] pcm = new float[2][numFrames];
-            ByteBuffer bb = ByteBuffer.wrap(pcmBytes).order(
-                    baseFormat.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN
-            );
+    // Decodes and converts to the given rate on read; fmtOut receives the format at that rate
+    public static SampleStore readWavToStore(File wavFile, float targetRate, AudioFormat[] fmtOut) throws Exception {
+        AudioFormat[] source = new AudioFormat[1];
+        SampleStore store = readWavToStore(wavFile, source);
+        float rate = source[0].getSampleRate();
+        if (fmtOut != null && fmtOut.length > 0)
+            fmtOut[0] = new AudioFormat(targetRate, 16, 2, true, false);
+        return Math.round(rate) == Math.round(targetRate) ? store : new ResampledStore(store, rate, targetRate);
+    }
 
-            if (sampleSize != 16) {
-                throw new UnsupportedOperationException("Only 16-bit PCM is supported");
+    // Imports of known length that fit the heap budget are decoded into heap chunks; longer ones, and
+    // streams that do not report a length, are written to a mapped scratch file in the same layout
+    public static SampleStore readWavToStore(File wavFile, AudioFormat[] fmtOut) throws Exception {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(wavFile)) {
+            PcmDecoder decoder = decoder(in, fmtOut);
+            boolean pcm16 = STORE_PCM16 && decoder.fitsPcm16();
+            long expected = in.getFrameLength();
+            if (expected != AudioSystem.NOT_SPECIFIED
+                    && fitsHeap(expected * decoder.getChannels() * (pcm16 ? 2 : 4))) {
+                return decodeToHeap(decoder, pcm16);
             }
 
-            for (int i = 0; i < numFrames; i++) {
-                if (channels == 1) {
-                    short s = bb.getShort();
-                    float v = s / 32768f;
-                    pcm[0][i] = v;
-                    pcm[1][i] = v;
-                } else { // stereo
-                    short left = bb.getShort();
-                    short right = bb.getShort();
-                    pcm[0][i] = left / 32768f;
-                    pcm[1][i] = right / 32768f;
+            float[][] block = BufferPool.samples();
+            try (MappedSampleStore.Writer writer = MappedSampleStore.create(decoder.getChannels(), pcm16)) {
+                int frames;
+                while ((frames = decoder.read(block, 0)) > 0) {
+                    writer.write(block, 0, frames);
                 }
+                return writer.finish();
+            } finally {
+                BufferPool.release(block);
             }
-            return pcm;
         }
     }
 
-    public static void writeWav(float[][] pcm, AudioFormat fmt, File out) throws Exception {
-        byte[] pcmBytes = toPCM16(pcm);
-
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(pcmBytes);
-             AudioInputStream ais = new AudioInputStream(bais, fmt, pcm[0].length)) {
-
-            AudioSystem.write(ais, AudioFileFormat.Type.WAVE, out);
-        }
+    // Within the budget, and within half of the heap still free so concurrent imports leave room to play
+    private static boolean fitsHeap(long bytes) {
+        Runtime rt = Runtime.getRuntime();
+        long free = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+        return bytes <= HEAP_IMPORT_BUDGET && bytes <= free / 2;
     }
 
-    public static byte[] toPCM16(float[][] pcm) {
-        int samples = pcm[0].length;
-        ByteBuffer bb = ByteBuffer.allocate(samples * 2 * 2).order(ByteOrder.LITTLE_ENDIAN);
-
-        for (int i = 0; i < samples; i++) {
-            float vL = Math.max(-1f, Math.min(1f, pcm[0][i]));
-            float vR = Math.max(-1f, Math.min(1f, pcm[1][i]));
-
-            short L = (short) (vL * Short.MAX_VALUE);
-            short R = (short) (vR * Short.MAX_VALUE);
-
-            bb.putShort(L);
-            bb.putShort(R);
-        }
-        return bb.array();
+    private static PcmDecoder decoder(AudioInputStream in, AudioFormat[] fmtOut) {
+        if (fmtOut != null && fmtOut.length > 0)
+            fmtOut[0] = PcmDecoder.decodedFormat(in.getFormat());
+        return new PcmDecoder(in, ProjectMixer.BLOCK_FRAMES);
     }
 
-    public static float[][] concatTrack(AudioTrack track) {
-        List<float[][]> allSegments = new ArrayList<>();
-        int totalSamples = 0;
-
-        for (AudioComponent c : track.getChildren()) {
-            if (c instanceof AudioSegment seg) {
-                float[][] s = seg.getSamples();
-                allSegments.add(s);
-                totalSamples += s[0].length;
+    private static HeapSampleStore decodeToHeap(PcmDecoder decoder, boolean pcm16) throws IOException {
+        float[][] block = BufferPool.samples();
+        try {
+            HeapSampleStore.Writer writer = HeapSampleStore.writer(decoder.getChannels(), pcm16);
+            int frames;
+            while ((frames = decoder.read(block, 0)) > 0) {
+                writer.write(block, 0, frames);
             }
+            return writer.finish();
+        } finally {
+            BufferPool.release(block);
         }
-
-        float[][] out = new float[2][totalSamples];
-        int pos = 0;
-
-        for (float[][] s : allSegments) {
-            int len = s[0].length;
-            System.arraycopy(s[0], 0, out[0], pos, len);
-            System.arraycopy(s[1], 0, out[1], pos, len);
-            pos += len;
-        }
-        return out;
     }
 
-    public static float[][] mixProject(AudioProject project) {
-        List<float[][]> allTracks = new ArrayList<>();
-        int maxSamples = 0;
-
-        for (AudioComponent c : project.getChildren()) {
-            if (c instanceof AudioTrack t) {
-                float[][] trackPcm = concatTrack(t);
-                allTracks.add(trackPcm);
-                maxSamples = Math.max(maxSamples, trackPcm[0].length);
-            }
-        }
-
-        float[][] mix = new float[2][maxSamples];
-
-        for (float[][] trackPcm : allTracks) {
-            int len = trackPcm[0].length;
-            for (int i = 0; i < len; i++) {
-                mix[0][i] += trackPcm[0][i];
-                mix[1][i] += trackPcm[1][i];
-            }
-        }
-
-        float max = 0f;
-        for (int i = 0; i < maxSamples; i++) {
-            max = Math.max(max, Math.abs(mix[0][i]));
-            max = Math.max(max, Math.abs(mix[1][i]));
-        }
-
-        if (max > 1f) {
-            float k = 1f / max;
-            for (int i = 0; i < maxSamples; i++) {
-                mix[0][i] *= k;
-                mix[1][i] *= k;
+    public static void writeWav(SampleStore store, AudioFormat fmt, File out) throws Exception {
+        float[][] block = BufferPool.samples();
+        try (WavStreamWriter writer = new WavStreamWriter(out, fmt)) {
+            long pos = 0;
+            int n;
+            while ((n = store.read(pos, block, 0, ProjectMixer.BLOCK_FRAMES)) > 0) {
+                writer.write(block, n);
+                pos += n;
             }
+        } finally {
+            BufferPool.release(block);
         }
-
-        return mix;
     }
 
-    public static void concatTrackToFile(AudioTrack track, File out, String fmt) throws Exception {
-        float[][] pcm = concatTrack(track);
-        AudioFormat format = track.getFormat();
-        writeWav(pcm, format, out);
-    }
+    public static int toPCM16(float[][] pcm, int offset, int frames, byte[] out) {
+        int b = 0;
+        for (int i = offset; i < offset + frames; i++) {
+            short L = (short) (clamp(pcm[0][i]) * Short.MAX_VALUE);
+            short R = (short) (clamp(pcm[1][i]) * Short.MAX_VALUE);
 
-    public static float[][] slice(float[][] source, int fromSample, int toSample) {
-        if (source == null || source.length != 2 || fromSample >= toSample || toSample <= 0) {
-            return new float[2][0];
+            out[b++] = (byte) L;
+            out[b++] = (byte) (L >> 8);
+            out[b++] = (byte) R;
+            out[b++] = (byte) (R >> 8);
         }
-
-        int start = Math.max(0, fromSample);
-        int end = Math.min(source[0].length, toSample);
-        int len = end - start;
-        if (len <= 0) return new float[2][0];
-
-        float[][] slice = new float[2][len];
-        System.arraycopy(source[0], start, slice[0], 0, len);
-        System.arraycopy(source[1], start, slice[1], 0, len);
-        return slice;
+        return b;
     }
 
-    public static float[][] cut(float[][] source, int fromSample, int toSample) {
-        if (source == null || source.length != 2) return new float[2][0];
-
-        int totalLen = source[0].length;
-        int start = Math.max(0, fromSample);
-        int end = Math.min(totalLen, toSample);
-        if (start >= end) return source;
-
-        int leftLen = start;
-        int rightLen = totalLen - end;
-        int newLen = leftLen + rightLen;
-
-        float[][] remaining = new float[2][newLen];
-
-        if (leftLen > 0) {
-            System.arraycopy(source[0], 0, remaining[0], 0, leftLen);
-            System.arraycopy(source[1], 0, remaining[1], 0, leftLen);
+    // Same conversion into a little-endian (possibly direct) buffer at its position
+    public static int toPCM16(float[][] pcm, int offset, int frames, ByteBuffer out) {
+        for (int i = offset; i < offset + frames; i++) {
+            out.putShort((short) (clamp(pcm[0][i]) * Short.MAX_VALUE));
+            out.putShort((short) (clamp(pcm[1][i]) * Short.MAX_VALUE));
         }
-        if (rightLen > 0) {
-            System.arraycopy(source[0], end, remaining[0], leftLen, rightLen);
-            System.arraycopy(source[1], end, remaining[1], leftLen, rightLen);
-        }
-        return remaining;
+        return frames * 4;
     }
 
-    public static float[][] splice(float[][] main, float[][] clip, int fromSample, int toSample) {
-        if (clip == null || clip[0].length == 0) return main;
-        if (main == null || main[0].length == 0) return clip;
-
-        int mainLen = main[0].length;
-        int clipLen = clip[0].length;
-
-        int start = Math.max(0, fromSample);
-        int end = Math.min(mainLen, toSample);
-        if (end < start) end = start;
-
-        int leftLen = start;
-        int rightLen = mainLen - end;
-        int newLen = leftLen + clipLen + rightLen;
-
-        float[][] result = new float[2][newLen];
-
-        if (leftLen > 0) {
-            System.arraycopy(main[0], 0, result[0], 0, leftLen);
-            System.arraycopy(main[1], 0, result[1], 0, leftLen);
-        }
-
-        System.arraycopy(clip[0], 0, result[0], leftLen, clipLen);
-        System.arraycopy(clip[1], 0, result[1], leftLen, clipLen);
-
-        if (rightLen > 0) {
-            System.arraycopy(main[0], end, result[0], leftLen + clipLen, rightLen);
-            System.arraycopy(main[1], end, result[1], leftLen + clipLen, rightLen);
-        }
-
-        return result;
+    // Same result as Math.max(-1f, Math.min(1f, v)) including NaN and -0f, but compiles to selects
+    private static float clamp(float v) {
+        return v > 1f ? 1f : (v < -1f ? -1f : v);
     }
 
-    public static float[][] reverse(float[][] samples, int fromSample, int toSample) {
-        if (samples == null || samples.length != 2 || samples[0].length == 0) {
-            return samples;
-        }
-
-        int totalSamples = samples[0].length;
-
-        float[][] result = new float[2][totalSamples];
-        System.arraycopy(samples[0], 0, result[0], 0, totalSamples);
-        System.arraycopy(samples[1], 0, result[1], 0, totalSamples);
-
-        int l = Math.max(0, fromSample);
-        int r = Math.min(totalSamples - 1, toSample - 1);
-
-        while (l < r) {
-            float tempL = result[0][l];
-            result[0][l] = result[0][r];
-            result[0][r] = tempL;
-
-            float tempR = result[1][l];
-            result[1][l] = result[1][r];
-            result[1][r] = tempR;
-
-            l++;
-            r--;
+    public static void concatTrackToFile(AudioTrack track, File out, String fmt) throws Exception {
+        float[][] block = BufferPool.samples();
+        long total = track.getFrameLength();
+
+        try (WavStreamWriter writer = new WavStreamWriter(out, track.getFormat())) {
+            long pos = 0;
+            while (pos < total) {
+                int n = track.read(pos, block, 0, ProjectMixer.BLOCK_FRAMES);
+                if (n <= 0) break;
+                writer.write(block, n);
+                pos += n;
+            }
+        } finally {
+            BufferPool.release(block);
         }
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package com.ivanka.audioeditor.client.model.composite;
+
+import com.ivanka.audioeditor.client.audio.BufferPool;
+import com.ivanka.audioeditor.client.audio.Envelope;
+import com.ivanka.audioeditor.client.audio.FrameSource;
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import com.ivanka.audioeditor.client.model.store.PeakPyramid;
+import com.ivanka.audioeditor.client.model.store.PieceTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable snapshot of a track's segments at their timeline positions. Gaps read as silence and
+// overlapping segments are summed. Clips intersecting a block are found through an interval index,
+// so reads and waveform columns cost O(log n) in the number of clips plus the clips actually hit.
+// Each clip's gain envelope is applied as it is read; waveform columns show the unautomated audio.
+// readRealtime works only in the caller's RenderScratch, so a block costs no allocation or lock.
+public final class TrackTimeline implements FrameSource {
+
+    public record Clip(AudioSegment segment, long start, PieceTable pieces, Envelope gain) {
+        public long end() { return start + pieces.getFrameLength(); }
+    }
+
+    // working space for readers that do not bring their own
+    private static final ThreadLocal<RenderScratch> SCRATCH = ThreadLocal.withInitial(RenderScratch::new);
+
+    private final IntervalIndex<Clip> index;
+    private final long frameLength;
+
+    TrackTimeline(List<AudioSegment> segments) {
+        List<Clip> clips = new ArrayList<>(segments.size());
+        for (AudioSegment s : segments) {
+            PieceTable pieces = s.getPieces();
+            if (pieces.getFrameLength() > 0) clips.add(new Clip(s, s.getStartFrame(), pieces, s.getGainEnvelope()));
+        }
+        this.index = new IntervalIndex<>(clips, Clip::start, Clip::end);
+        this.frameLength = Math.max(0, index.getEnd());
+    }
+
+    public List<Clip> clipsIn(long from, long to) {
+        return index.overlapping(from, to);
+    }
+
+    // Clip under the frame; where clips overlap, the one that starts last
+    public Clip clipAt(long frame) {
+        List<Clip> hits = index.overlapping(frame, frame + 1);
+        return hits.isEmpty() ? null : hits.get(hits.size() - 1);
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return read(fromFrame, dst, dstOffset, frames, SCRATCH.get(), false);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return read(fromFrame, dst, dstOffset, frames, scratch, true);
+    }
+
+    private int read(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch, boolean realtime) {
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        long to = fromFrame + n;
+
+        Arrays.fill(dst[0], dstOffset, dstOffset + n, 0f);
+        Arrays.fill(dst[1], dstOffset, dstOffset + n, 0f);
+
+        int[] hits = scratch.hits(0);
+        int count = index.overlapping(fromFrame, to, hits);
+        if (count > hits.length) {
+            hits = scratch.hits(count);
+            index.overlapping(fromFrame, to, hits);
+        }
+
+        if (count == 1) {
+            Clip c = index.get(hits[0]);
+            long a = Math.max(fromFrame, c.start());
+            long b = Math.min(to, c.end());
+            int off = dstOffset + (int) (a - fromFrame);
+            int got = readClip(c, a - c.start(), dst, off, (int) (b - a), scratch, realtime);
+            if (got > 0) applyClipGain(c.gain(), a - c.start(), dst, off, got, scratch.ramp());
+            return n;
+        }
+
+        float[][] mix = scratch.mix();
+        for (int h = 0; h < count; h++) {
+            Clip c = index.get(hits[h]);
+            long a = Math.max(fromFrame, c.start());
+            long b = Math.min(to, c.end());
+            while (a < b) {
+                int want = (int) Math.min(b - a, BufferPool.BLOCK_FRAMES);
+                int got = readClip(c, a - c.start(), mix, 0, want, scratch, realtime);
+                if (got <= 0) break;
+                applyClipGain(c.gain(), a - c.start(), mix, 0, got, scratch.ramp());
+                int off = dstOffset + (int) (a - fromFrame);
+                for (int i = 0; i < got; i++) {
+                    dst[0][off + i] += mix[0][i];
+                    dst[1][off + i] += mix[1][i];
+                }
+                a += got;
+            }
+        }
+        return n;
+    }
+
+    private static int readClip(Clip c, long local, float[][] buf, int off, int n, RenderScratch scratch, boolean realtime) {
+        return realtime ? c.pieces().readRealtime(local, buf, off, n, scratch) : c.pieces().read(local, buf, off, n);
+    }
+
+    // Multiplies frames [off, off + n) of buf, which start at clip frame `local`, by the clip envelope
+    private static void applyClipGain(Envelope env, long local, float[][] buf, int off, int n, float[] ramp) {
+        if (env.isFlat(local, n)) {
+            float g = env.valueAt(local);
+            if (g == 1f) return;
+            for (int i = off; i < off + n; i++) {
+                buf[0][i] *= g;
+                buf[1][i] *= g;
+            }
+            return;
+        }
+
+        for (int done = 0; done < n; done += ramp.length) {
+            int len = Math.min(ramp.length, n - done);
+            env.fill(local + done, ramp, len);
+            int base = off + done;
+            for (int i = 0; i < len; i++) {
+                buf[0][base + i] *= ramp[i];
+                buf[1][base + i] *= ramp[i];
+            }
+        }
+    }
+
+    // Waveform column summary like PeakPyramid.query; uncovered frames count as silence
+    public void peaks(long from, long to, float[] out) {
+        out[0] = 1f;
+        out[1] = -1f;
+        out[2] = 0f;
+        float[] part = new float[3];
+        double sq = 0;
+        long covered = 0;
+        for (Clip c : index.overlapping(from, to)) {
+            long a = Math.max(from, c.start());
+            long b = Math.min(to, c.end());
+            PeakPyramid.query(c.pieces(), a - c.start(), b - c.start(), part);
+            out[0] = Math.min(out[0], part[0]);
+            out[1] = Math.max(out[1], part[1]);
+            sq += (double) part[2] * part[2] * (b - a);
+            covered += b - a;
+        }
+        if (covered < to - from) {
+            out[0] = Math.min(out[0], 0f);
+            out[1] = Math.max(out[1], 0f);
+        }
+        if (to > from) out[2] = (float) Math.sqrt(sq / (to - from));
+    }
+}
@@ -0,0 +1,162 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Ordered edit decision list over an imported store. Adding an edit only appends it; the piece table
+// the edits describe is brought up to date on the next read, one O(pieces) step per pending edit.
+// No edit touches samples: gain is a per-piece factor and tempo a lazily rendered store.
+// Undo moves the last edit to a redo stack and replays from the nearest checkpoint, so the history
+// costs a few ranges per edit rather than a copy of the audio.
+public final class EditList {
+
+    private static final int CHECKPOINT_EVERY = 16;
+
+    public sealed interface Edit permits Cut, Insert, Reverse, Gain, Tempo {
+        PieceTable apply(PieceTable table);
+
+        // Audio the edit brings in that was not already part of the table
+        default PieceTable clip() { return PieceTable.empty(); }
+    }
+
+    public record Cut(long from, long to) implements Edit {
+        @Override public PieceTable apply(PieceTable t) { return t.cut(from, to); }
+    }
+
+    // Replaces [from, to) with the clip; from == to inserts
+    public record Insert(PieceTable clip, long from, long to) implements Edit {
+        @Override public PieceTable apply(PieceTable t) { return t.splice(clip, from, to); }
+    }
+
+    public record Reverse(long from, long to) implements Edit {
+        @Override public PieceTable apply(PieceTable t) { return t.reverse(from, to); }
+    }
+
+    public record Gain(long from, long to, float factor) implements Edit {
+        @Override public PieceTable apply(PieceTable t) { return t.gain(from, to, factor); }
+    }
+
+    public record Tempo(long from, long to, StretchedStore stretched) implements Edit {
+        @Override public PieceTable apply(PieceTable t) { return t.splice(clip(), from, to); }
+        @Override public PieceTable clip() { return PieceTable.of(stretched); }
+    }
+
+    private PieceTable base;
+    private final List<Edit> edits = new ArrayList<>();
+    private final Deque<Edit> redo = new ArrayDeque<>();
+    // table after n edits, kept every CHECKPOINT_EVERY edits; key 0 is the base
+    private final TreeMap<Integer, PieceTable> checkpoints = new TreeMap<>();
+
+    private PieceTable resolved;
+    private int resolvedCount = 0;
+    private volatile PieceTable current;
+    private volatile boolean pending = false;
+
+    public EditList(PieceTable base) {
+        this.base = base;
+        this.resolved = base;
+        this.current = base;
+        checkpoints.put(0, base);
+    }
+
+    public synchronized PieceTable getBase() {
+        return base;
+    }
+
+    public synchronized List<Edit> getEdits() {
+        return List.copyOf(edits);
+    }
+
+    public synchronized void add(Edit edit) {
+        edits.add(edit);
+        redo.clear();
+        pending = true;
+    }
+
+    public synchronized boolean canUndo() {
+        return !edits.isEmpty();
+    }
+
+    public synchronized boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public synchronized boolean undo() {
+        if (edits.isEmpty()) return false;
+        redo.push(edits.remove(edits.size() - 1));
+        if (resolvedCount > edits.size()) {
+            checkpoints.tailMap(edits.size(), false).clear();
+            Map.Entry<Integer, PieceTable> cp = checkpoints.lastEntry();
+            resolvedCount = cp.getKey();
+            resolved = cp.getValue();
+        }
+        pending = true;
+        return true;
+    }
+
+    public synchronized boolean redo() {
+        if (redo.isEmpty()) return false;
+        edits.add(redo.pop());
+        pending = true;
+        return true;
+    }
+
+    public synchronized void clearRedo() {
+        redo.clear();
+    }
+
+    // Folds the oldest edit into the base; it can no longer be undone
+    public synchronized void dropOldest() {
+        if (edits.isEmpty()) return;
+        base = edits.remove(0).apply(base);
+        TreeMap<Integer, PieceTable> shifted = new TreeMap<>();
+        for (Map.Entry<Integer, PieceTable> cp : checkpoints.tailMap(1, true).entrySet()) {
+            shifted.put(cp.getKey() - 1, cp.getValue());
+        }
+        shifted.put(0, base);
+        checkpoints.clear();
+        checkpoints.putAll(shifted);
+        if (resolvedCount > 0) {
+            resolvedCount--;
+        } else {
+            resolved = base;
+        }
+    }
+
+    public PieceTable resolve() {
+        if (!pending) return current;
+        synchronized (this) {
+            while (resolvedCount < edits.size()) {
+                resolved = edits.get(resolvedCount++).apply(resolved);
+                if (resolvedCount % CHECKPOINT_EVERY == 0) checkpoints.put(resolvedCount, resolved);
+            }
+            current = resolved;
+            pending = false;
+            return resolved;
+        }
+    }
+
+    // Leaf stores the base, the applied edits and the redo stack hold on to
+    public synchronized void collectStores(Collection<SampleStore> out) {
+        collectStores(base, out);
+        for (Edit e : edits) collectStores(e.clip(), out);
+        for (Edit e : redo) collectStores(e.clip(), out);
+    }
+
+    public static void collectStores(SampleStore store, Collection<SampleStore> out) {
+        if (store instanceof PieceTable t) {
+            for (PieceTable.Piece p : t.getPieces()) collectStores(p.source(), out);
+        } else if (store instanceof StretchedStore s) {
+            collectStores(s.getSource(), out);
+        } else if (store instanceof ResampledStore s) {
+            collectStores(s.getSource(), out);
+        } else if (store != null) {
+            out.add(store);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Frames on the heap in fixed-size chunks addressed by long frame index, so a long recording is many
+// small arrays instead of one contiguous allocation per channel. Samples are kept in the source's
+// channel count, optionally as 16-bit integers, and only widen to stereo float inside read().
+public class HeapSampleStore implements SampleStore {
+
+    public static final int CHUNK_FRAMES = 1 << 20;
+    static final float PCM16_SCALE = 1f / 32768f;
+
+    private final long frameLength;
+    private final int channels;
+    private final boolean pcm16;
+    private volatile Chunk[] chunks;
+    private volatile SampleStore spilled;
+
+    public HeapSampleStore(float[][] samples) {
+        this(split(samples == null || samples.length == 0 ? new float[2][0] : samples), 2, false);
+    }
+
+    private HeapSampleStore(Chunk[] chunks, int channels, boolean pcm16) {
+        this.chunks = chunks;
+        this.channels = channels;
+        this.pcm16 = pcm16;
+        long len = 0;
+        for (Chunk c : chunks) len += c.length();
+        this.frameLength = len;
+    }
+
+    public static Writer writer() {
+        return new Writer(2, false);
+    }
+
+    // channels is 1 or 2; pcm16 keeps samples as shorts, which is exact for 8- and 16-bit sources
+    public static Writer writer(int channels, boolean pcm16) {
+        if (channels < 1 || channels > 2) throw new IllegalArgumentException("Channels must be 1 or 2: " + channels);
+        return new Writer(channels, pcm16);
+    }
+
+    public long getHeapBytes() {
+        return chunks == null ? 0 : frameLength * channels * (pcm16 ? 2 : 4);
+    }
+
+    // Moves the samples to a mapped scratch file in the same layout; reads keep returning the same values
+    public synchronized void spill() throws IOException {
+        if (chunks == null) return;
+        spilled = MappedSampleStore.copyOf(this, channels, pcm16);
+        chunks = null;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        Chunk[] c = chunks;
+        if (c == null) return spilled.read(fromFrame, dst, dstOffset, frames);
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        int done = 0;
+        while (done < n) {
+            long pos = fromFrame + done;
+            Chunk chunk = c[(int) (pos / CHUNK_FRAMES)];
+            int local = (int) (pos % CHUNK_FRAMES);
+            int count = Math.min(n - done, chunk.length() - local);
+
+            chunk.read(local, dst, dstOffset + done, count);
+            done += count;
+        }
+        return n;
+    }
+
+    @Override
+    public float[][] toArray() {
+        Chunk[] c = chunks;
+        if (c == null) return spilled.toArray();
+        if (c.length == 1 && c[0] instanceof FloatChunk f && f.channels().length == 2) return f.channels();
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Segment is too long to materialize on the heap");
+        }
+        float[][] out = new float[2][(int) frameLength];
+        read(0, out, 0, (int) frameLength);
+        return out;
+    }
+
+    // Short arrays are kept as they are; longer ones are copied into chunks
+    private static Chunk[] split(float[][] samples) {
+        int len = samples[0].length;
+        if (len <= CHUNK_FRAMES) return new Chunk[]{new FloatChunk(samples)};
+
+        Writer w = new Writer(2, false);
+        w.write(samples, 0, len);
+        return w.chunks();
+    }
+
+    private sealed interface Chunk permits FloatChunk, ShortChunk {
+        int length();
+
+        // A mono chunk fills both output channels
+        void read(int from, float[][] dst, int dstOffset, int count);
+    }
+
+    private record FloatChunk(float[][] channels) implements Chunk {
+        @Override
+        public int length() {
+            return channels[0].length;
+        }
+
+        @Override
+        public void read(int from, float[][] dst, int dstOffset, int count) {
+            System.arraycopy(channels[0], from, dst[0], dstOffset, count);
+            System.arraycopy(channels[channels.length - 1], from, dst[1], dstOffset, count);
+        }
+    }
+
+    private record ShortChunk(short[][] channels) implements Chunk {
+        @Override
+        public int length() {
+            return channels[0].length;
+        }
+
+        @Override
+        public void read(int from, float[][] dst, int dstOffset, int count) {
+            for (int ch = 0; ch < 2; ch++) {
+                short[] src = channels[Math.min(ch, channels.length - 1)];
+                float[] out = dst[ch];
+                for (int i = 0; i < count; i++) out[dstOffset + i] = src[from + i] * PCM16_SCALE;
+            }
+        }
+    }
+
+    // Appends blocks into chunks allocated one at a time, so the final length need not be known
+    public static class Writer {
+
+        private final int channels;
+        private final boolean pcm16;
+        private final List<Chunk> full = new ArrayList<>();
+        private float[][] floats;
+        private short[][] shorts;
+        private int capacity;
+        private int fill = 0;
+
+        private Writer(int channels, boolean pcm16) {
+            this.channels = channels;
+            this.pcm16 = pcm16;
+            allocate(1 << 16);
+        }
+
+        public void write(float[][] block, int offset, int count) {
+            while (count > 0) {
+                if (fill == capacity) {
+                    if (fill < CHUNK_FRAMES) {
+                        // the first chunk grows up to full size, so short clips stay small
+                        resize(Math.min(CHUNK_FRAMES, fill * 2));
+                    } else {
+                        full.add(current());
+                        allocate(CHUNK_FRAMES);
+                        fill = 0;
+                    }
+                }
+                int n = Math.min(count, capacity - fill);
+                for (int ch = 0; ch < channels; ch++) {
+                    if (pcm16) {
+                        short[] out = shorts[ch];
+                        float[] in = block[ch];
+                        for (int i = 0; i < n; i++) out[fill + i] = toPcm16(in[offset + i]);
+                    } else {
+                        System.arraycopy(block[ch], offset, floats[ch], fill, n);
+                    }
+                }
+                fill += n;
+                offset += n;
+                count -= n;
+            }
+        }
+
+        public long getFrameLength() {
+            return (long) full.size() * CHUNK_FRAMES + fill;
+        }
+
+        public HeapSampleStore finish() {
+            return new HeapSampleStore(chunks(), channels, pcm16);
+        }
+
+        private Chunk[] chunks() {
+            List<Chunk> out = new ArrayList<>(full);
+            if (fill > 0 || out.isEmpty()) {
+                if (fill < capacity) resize(fill);
+                out.add(current());
+            }
+            return out.toArray(new Chunk[0]);
+        }
+
+        private Chunk current() {
+            return pcm16 ? new ShortChunk(shorts) : new FloatChunk(floats);
+        }
+
+        private void allocate(int frames) {
+            if (pcm16) shorts = new short[channels][frames];
+            else floats = new float[channels][frames];
+            capacity = frames;
+        }
+
+        private void resize(int frames) {
+            for (int ch = 0; ch < channels; ch++) {
+                if (pcm16) shorts[ch] = Arrays.copyOf(shorts[ch], frames);
+                else floats[ch] = Arrays.copyOf(floats[ch], frames);
+            }
+            capacity = frames;
+        }
+    }
+
+    // Inverse of PCM16_SCALE, clamped; exact for samples that came from 8- or 16-bit integers
+    static short toPcm16(float v) {
+        int s = Math.round(v * 32768f);
+        return (short) (s > Short.MAX_VALUE ? Short.MAX_VALUE : (s < Short.MIN_VALUE ? Short.MIN_VALUE : s));
+    }
+}
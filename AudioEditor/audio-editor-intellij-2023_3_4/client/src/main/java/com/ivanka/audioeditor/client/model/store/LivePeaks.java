@@ -0,0 +1,80 @@
+package com.ivanka.audioeditor.client.model.store;
+
+// Min/max/mean-square summary of the left channel of audio that is still arriving, for drawing a take
+// while it records. The bins have a fixed count; when they fill up, neighbours are merged and each
+// bin covers twice as many frames, so memory stays constant however long the take runs.
+public final class LivePeaks {
+
+    private static final int BINS = 8192;
+    private static final float PCM16_SCALE = 1f / 32768f;
+
+    private final float[] min = new float[BINS];
+    private final float[] max = new float[BINS];
+    private final double[] sq = new double[BINS];
+
+    private long framesPerBin = PeakPyramid.BASE_BLOCK;
+    private int count = 0;
+    private long frameLength = 0;
+
+    // Little-endian 16-bit stereo, as captured from the line
+    public synchronized void addPcm16(byte[] pcm, int bytes) {
+        for (int b = 0; b + 3 < bytes; b += 4) {
+            float v = (short) ((pcm[b + 1] << 8) | (pcm[b] & 0xFF)) * PCM16_SCALE;
+            int bin = (int) (frameLength / framesPerBin);
+            if (bin == BINS) {
+                merge();
+                bin = (int) (frameLength / framesPerBin);
+            }
+            if (bin == count) {
+                min[bin] = v;
+                max[bin] = v;
+                sq[bin] = 0;
+                count++;
+            } else {
+                if (v < min[bin]) min[bin] = v;
+                if (v > max[bin]) max[bin] = v;
+            }
+            sq[bin] += v * v;
+            frameLength++;
+        }
+    }
+
+    public synchronized long getFrameLength() {
+        return frameLength;
+    }
+
+    // out = {min, max, rms} over [from, to), like PeakPyramid.query
+    public synchronized void peaks(long from, long to, float[] out) {
+        out[0] = 1f;
+        out[1] = -1f;
+        out[2] = 0f;
+        int first = (int) Math.max(0, from / framesPerBin);
+        int last = (int) Math.min(count, (to + framesPerBin - 1) / framesPerBin);
+        if (first >= last) {
+            out[0] = 0f;
+            out[1] = 0f;
+            return;
+        }
+        double acc = 0;
+        long frames = 0;
+        for (int i = first; i < last; i++) {
+            out[0] = Math.min(out[0], min[i]);
+            out[1] = Math.max(out[1], max[i]);
+            acc += sq[i];
+            frames += Math.min(framesPerBin, frameLength - i * framesPerBin);
+        }
+        out[2] = (float) Math.sqrt(acc / frames);
+    }
+
+    private void merge() {
+        int half = count / 2;
+        for (int i = 0; i < half; i++) {
+            int a = 2 * i, b = a + 1;
+            min[i] = Math.min(min[a], min[b]);
+            max[i] = Math.max(max[a], max[b]);
+            sq[i] = sq[a] + sq[b];
+        }
+        count = half;
+        framesPerBin *= 2;
+    }
+}
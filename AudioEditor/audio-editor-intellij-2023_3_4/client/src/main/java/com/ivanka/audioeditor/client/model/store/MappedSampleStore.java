@@ -0,0 +1,208 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.BufferPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Interleaved frames in a scratch file, mapped read-only, laid out like HeapSampleStore keeps them:
+// the source's channel count, as float32 or 16-bit integers, widened to stereo float inside read().
+// Pages are faulted in on first access and the OS may drop them again under pressure;
+// the scratch file goes away once the store itself is unreachable.
+public class MappedSampleStore implements SampleStore {
+
+    private static final long REGION_FRAMES = 1L << 26;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long frameLength;
+    private final int channels;
+    private final boolean pcm16;
+    private final int frameBytes;
+    private final MappedByteBuffer[] regions;
+
+    private MappedSampleStore(File file, long frameLength, int channels, boolean pcm16) throws IOException {
+        this.frameLength = frameLength;
+        this.channels = channels;
+        this.pcm16 = pcm16;
+        this.frameBytes = channels * (pcm16 ? 2 : 4);
+        int count = (int) ((frameLength + REGION_FRAMES - 1) / REGION_FRAMES);
+        this.regions = new MappedByteBuffer[count];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            for (int r = 0; r < count; r++) {
+                long first = r * REGION_FRAMES;
+                long frames = Math.min(REGION_FRAMES, frameLength - first);
+                regions[r] = ch.map(FileChannel.MapMode.READ_ONLY, first * frameBytes, frames * frameBytes);
+                regions[r].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        CLEANER.register(this, new Deleter(file));
+    }
+
+    public static Writer create() throws IOException {
+        return new Writer(2, false);
+    }
+
+    // channels is 1 or 2; pcm16 keeps samples as shorts, which is exact for 8- and 16-bit sources
+    public static Writer create(int channels, boolean pcm16) throws IOException {
+        if (channels < 1 || channels > 2) throw new IllegalArgumentException("Channels must be 1 or 2: " + channels);
+        return new Writer(channels, pcm16);
+    }
+
+    public static MappedSampleStore of(float[][] samples) throws IOException {
+        try (Writer w = create()) {
+            w.write(samples, 0, samples[0].length);
+            return w.finish();
+        }
+    }
+
+    public static MappedSampleStore copyOf(SampleStore source) throws IOException {
+        return copyOf(source, 2, false);
+    }
+
+    public static MappedSampleStore copyOf(SampleStore source, int channels, boolean pcm16) throws IOException {
+        float[][] block = BufferPool.samples();
+        try (Writer w = create(channels, pcm16)) {
+            long pos = 0;
+            int n;
+            while ((n = source.read(pos, block, 0, block[0].length)) > 0) {
+                w.write(block, 0, n);
+                pos += n;
+            }
+            return w.finish();
+        } finally {
+            BufferPool.release(block);
+        }
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        int done = 0;
+        while (done < n) {
+            long pos = fromFrame + done;
+            MappedByteBuffer region = regions[(int) (pos / REGION_FRAMES)];
+            int local = (int) (pos % REGION_FRAMES);
+            int count = (int) Math.min(n - done, REGION_FRAMES - local);
+
+            // a mono frame's only sample is read for both channels
+            int byteOff = local * frameBytes;
+            int right = frameBytes - frameBytes / channels;
+            float[] l = dst[0];
+            float[] r = dst[1];
+            int at = dstOffset + done;
+            if (pcm16) {
+                for (int i = 0; i < count; i++) {
+                    l[at + i] = region.getShort(byteOff) * HeapSampleStore.PCM16_SCALE;
+                    r[at + i] = region.getShort(byteOff + right) * HeapSampleStore.PCM16_SCALE;
+                    byteOff += frameBytes;
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    l[at + i] = region.getFloat(byteOff);
+                    r[at + i] = region.getFloat(byteOff + right);
+                    byteOff += frameBytes;
+                }
+            }
+            done += count;
+        }
+        return n;
+    }
+
+    @Override
+    public float[][] toArray() {
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Segment is too long to materialize on the heap");
+        }
+        float[][] out = new float[2][(int) frameLength];
+        read(0, out, 0, (int) frameLength);
+        return out;
+    }
+
+    private record Deleter(File file) implements Runnable {
+        @Override
+        public void run() {
+            if (!file.delete()) file.deleteOnExit();
+        }
+    }
+
+    public static class Writer implements AutoCloseable {
+
+        private final int channels;
+        private final boolean pcm16;
+        private final int frameBytes;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private long frames = 0;
+        private boolean finished = false;
+
+        private Writer(int channels, boolean pcm16) throws IOException {
+            this.channels = channels;
+            this.pcm16 = pcm16;
+            this.frameBytes = channels * (pcm16 ? 2 : 4);
+            this.file = File.createTempFile("samples-", pcm16 ? ".s16" : ".f32");
+            this.file.deleteOnExit();
+            this.raf = new RandomAccessFile(file, "rw");
+            this.ch = raf.getChannel();
+        }
+
+        public void write(float[][] block, int offset, int count) throws IOException {
+            for (int i = offset; i < offset + count; i++) {
+                if (buf.remaining() < frameBytes) flush();
+                for (int ch = 0; ch < channels; ch++) {
+                    if (pcm16) buf.putShort(HeapSampleStore.toPcm16(block[ch][i]));
+                    else buf.putFloat(block[ch][i]);
+                }
+            }
+            frames += count;
+        }
+
+        public long getFrameLength() {
+            return frames;
+        }
+
+        public MappedSampleStore finish() throws IOException {
+            flush();
+            ch.close();
+            raf.close();
+            finished = true;
+            return new MappedSampleStore(file, frames, channels, pcm16);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() {
+            if (finished) return;
+            try {
+                ch.close();
+                raf.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.BufferPool;
+import com.ivanka.audioeditor.client.audio.SampleKernels;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Min/max/mean-square mipmap of the left channel of one immutable store.
+// Level 0 summarizes BASE_BLOCK frames per entry, every next level FACTOR entries of the previous one.
+// Stores never change, so a pyramid is built once per store and edits only add pyramids for new stores.
+public final class PeakPyramid {
+
+    public static final int BASE_BLOCK = 256;
+    public static final int FACTOR = 4;
+
+    private static final SampleKernels KERNELS = SampleKernels.get();
+    private static final Map<SampleStore, Slot> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<float[]> mins = new ArrayList<>();
+    private final List<float[]> maxs = new ArrayList<>();
+    private final List<float[]> squares = new ArrayList<>();
+
+    private PeakPyramid(SampleStore source) {
+        buildBase(source);
+        while (mins.get(mins.size() - 1).length > 1) buildNext();
+    }
+
+    // The map lock only covers finding the store's slot; the pyramid is built under the slot's own lock,
+    // so callers for the same store wait for one build and callers for other stores do not wait at all
+    public static PeakPyramid of(SampleStore store) {
+        return CACHE.computeIfAbsent(store, s -> new Slot()).get(store);
+    }
+
+    // Holds no reference to its store, so the weak key can still be collected
+    private static final class Slot {
+        private volatile PeakPyramid pyramid;
+
+        PeakPyramid get(SampleStore store) {
+            PeakPyramid p = pyramid;
+            if (p != null) return p;
+            synchronized (this) {
+                if (pyramid == null) pyramid = new PeakPyramid(store);
+                return pyramid;
+            }
+        }
+    }
+
+    public static void warm(SampleStore store) {
+        for (PieceTable.Piece p : PieceTable.of(store).getPieces()) of(p.source());
+    }
+
+    // out = {min, max, rms}
+    public static void query(PieceTable table, long from, long to, float[] out) {
+        out[0] = 1f;
+        out[1] = -1f;
+        out[2] = 0f;
+        double[] sq = new double[2];
+        float[] part = new float[2];
+        double[] partSq = new double[2];
+        table.visitSources(from, to, (src, a, b, gain) -> {
+            if (gain == 1f) {
+                of(src).accumulate(src, a, b, out, sq);
+                return;
+            }
+            // pieces with a gain edit are summarized from the source pyramid and scaled afterwards
+            part[0] = 1f;
+            part[1] = -1f;
+            partSq[0] = 0;
+            partSq[1] = 0;
+            of(src).accumulate(src, a, b, part, partSq);
+            if (partSq[1] == 0) return;
+            float lo = gain >= 0 ? part[0] * gain : part[1] * gain;
+            float hi = gain >= 0 ? part[1] * gain : part[0] * gain;
+            out[0] = Math.min(out[0], lo);
+            out[1] = Math.max(out[1], hi);
+            sq[0] += partSq[0] * gain * gain;
+            sq[1] += partSq[1];
+        });
+        if (sq[1] > 0) out[2] = (float) Math.sqrt(sq[0] / sq[1]);
+    }
+
+    private void accumulate(SampleStore source, long from, long to, float[] out, double[] sq) {
+        long len = to - from;
+        if (len <= 0) return;
+
+        if (len < BASE_BLOCK) {
+            float[][] raw = BufferPool.samples();
+            try {
+                int n = source.read(from, raw, 0, (int) len);
+                KERNELS.minMax(raw[0], 0, n, out);
+                for (int i = 0; i < n; i++) sq[0] += raw[0][i] * raw[0][i];
+                sq[1] += n;
+            } finally {
+                BufferPool.release(raw);
+            }
+            return;
+        }
+
+        int level = 0;
+        long block = BASE_BLOCK;
+        while (level + 1 < mins.size() && block * FACTOR <= len) {
+            block *= FACTOR;
+            level++;
+        }
+
+        float[] lMin = mins.get(level);
+        float[] lMax = maxs.get(level);
+        float[] lSq = squares.get(level);
+        int first = (int) (from / block);
+        int last = (int) Math.min(lMin.length, (to + block - 1) / block);
+        for (int i = first; i < last; i++) {
+            if (lMin[i] < out[0]) out[0] = lMin[i];
+            if (lMax[i] > out[1]) out[1] = lMax[i];
+            sq[0] += lSq[i] * block;
+            sq[1] += block;
+        }
+    }
+
+    private void buildBase(SampleStore source) {
+        long total = source.getFrameLength();
+        int count = (int) Math.max(1, (total + BASE_BLOCK - 1) / BASE_BLOCK);
+        float[] min = new float[count];
+        float[] max = new float[count];
+        float[] sq = new float[count];
+
+        float[][] buf = new float[2][BASE_BLOCK * 256];
+        float[] range = new float[2];
+        long pos = 0;
+        int n;
+        while ((n = source.read(pos, buf, 0, buf[0].length)) > 0) {
+            for (int off = 0; off < n; off += BASE_BLOCK) {
+                int end = Math.min(n, off + BASE_BLOCK);
+                range[0] = 1f;
+                range[1] = -1f;
+                KERNELS.minMax(buf[0], off, end, range);
+                double acc = 0;
+                for (int i = off; i < end; i++) acc += buf[0][i] * buf[0][i];
+                int idx = (int) ((pos + off) / BASE_BLOCK);
+                min[idx] = range[0];
+                max[idx] = range[1];
+                sq[idx] = (float) (acc / (end - off));
+            }
+            pos += n;
+        }
+        mins.add(min);
+        maxs.add(max);
+        squares.add(sq);
+    }
+
+    private void buildNext() {
+        float[] pMin = mins.get(mins.size() - 1);
+        float[] pMax = maxs.get(maxs.size() - 1);
+        float[] pSq = squares.get(squares.size() - 1);
+        int count = (pMin.length + FACTOR - 1) / FACTOR;
+        float[] min = new float[count];
+        float[] max = new float[count];
+        float[] sq = new float[count];
+
+        for (int i = 0; i < count; i++) {
+            int from = i * FACTOR;
+            int to = Math.min(pMin.length, from + FACTOR);
+            float lo = pMin[from], hi = pMax[from], acc = 0f;
+            for (int j = from; j < to; j++) {
+                lo = Math.min(lo, pMin[j]);
+                hi = Math.max(hi, pMax[j]);
+                acc += pSq[j];
+            }
+            min[i] = lo;
+            max[i] = hi;
+            sq[i] = acc / (to - from);
+        }
+        mins.add(min);
+        maxs.add(max);
+        squares.add(sq);
+    }
+}
@@ -0,0 +1,268 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable sequence of spans over immutable stores. Every edit returns a new table
+// and costs O(pieces); the samples themselves are never copied.
+public final class PieceTable implements SampleStore {
+
+    public record Piece(SampleStore source, long start, long length, boolean reversed, float gain) {
+
+        Piece sub(long from, long len) {
+            long s = reversed ? start + length - from - len : start + from;
+            return new Piece(source, s, len, reversed, gain);
+        }
+
+        Piece flipped() {
+            return new Piece(source, start, length, !reversed, gain);
+        }
+
+        Piece scaled(float factor) {
+            return new Piece(source, start, length, reversed, gain * factor);
+        }
+    }
+
+    public interface SourceVisitor {
+        void visit(SampleStore source, long sourceFrom, long sourceTo, float gain);
+    }
+
+    private static final PieceTable EMPTY = new PieceTable(List.of());
+
+    private final List<Piece> pieces;
+    private final long[] offsets;
+    private final long frameLength;
+
+    private PieceTable(List<Piece> pieces) {
+        this.pieces = Collections.unmodifiableList(pieces);
+        this.offsets = new long[pieces.size()];
+        long pos = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            offsets[i] = pos;
+            pos += pieces.get(i).length();
+        }
+        this.frameLength = pos;
+    }
+
+    public static PieceTable empty() {
+        return EMPTY;
+    }
+
+    public static PieceTable of(SampleStore store) {
+        if (store instanceof PieceTable pt) return pt;
+        if (store == null || store.getFrameLength() == 0) return EMPTY;
+        return new PieceTable(List.of(new Piece(store, 0, store.getFrameLength(), false, 1f)));
+    }
+
+    public List<Piece> getPieces() {
+        return pieces;
+    }
+
+    public boolean referencesHeap() {
+        for (Piece p : pieces) {
+            if (p.source() instanceof HeapSampleStore) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    public PieceTable slice(long from, long to) {
+        long start = Math.max(0, from);
+        long end = Math.min(frameLength, to);
+        if (start >= end) return EMPTY;
+        if (start == 0 && end == frameLength) return this;
+
+        Builder b = new Builder();
+        appendRange(b, start, end);
+        return b.build();
+    }
+
+    public PieceTable cut(long from, long to) {
+        long start = Math.max(0, from);
+        long end = Math.min(frameLength, to);
+        if (start >= end) return this;
+
+        Builder b = new Builder();
+        appendRange(b, 0, start);
+        appendRange(b, end, frameLength);
+        return b.build();
+    }
+
+    public PieceTable splice(PieceTable clip, long from, long to) {
+        if (clip == null || clip.frameLength == 0) return this;
+        if (frameLength == 0) return clip;
+
+        long start = Math.max(0, Math.min(frameLength, from));
+        long end = Math.max(start, Math.min(frameLength, to));
+
+        Builder b = new Builder();
+        appendRange(b, 0, start);
+        for (Piece p : clip.pieces) b.add(p);
+        appendRange(b, end, frameLength);
+        return b.build();
+    }
+
+    public PieceTable reverse(long from, long to) {
+        long start = Math.max(0, from);
+        long end = Math.min(frameLength, to);
+        if (end - start < 2) return this;
+
+        List<Piece> middle = slice(start, end).pieces;
+        Builder b = new Builder();
+        appendRange(b, 0, start);
+        for (int i = middle.size() - 1; i >= 0; i--) b.add(middle.get(i).flipped());
+        appendRange(b, end, frameLength);
+        return b.build();
+    }
+
+    public PieceTable gain(long from, long to, float factor) {
+        long start = Math.max(0, from);
+        long end = Math.min(frameLength, to);
+        if (start >= end || factor == 1f) return this;
+
+        List<Piece> middle = slice(start, end).pieces;
+        Builder b = new Builder();
+        appendRange(b, 0, start);
+        for (Piece p : middle) b.add(p.scaled(factor));
+        appendRange(b, end, frameLength);
+        return b.build();
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return read(fromFrame, dst, dstOffset, frames, null);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return read(fromFrame, dst, dstOffset, frames, scratch);
+    }
+
+    // A null scratch reads the sources with plain read
+    private int read(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        int idx = indexOf(fromFrame);
+        int done = 0;
+
+        while (done < n && idx < pieces.size()) {
+            Piece p = pieces.get(idx);
+            long local = fromFrame + done - offsets[idx];
+            int count = (int) Math.min(n - done, p.length() - local);
+            int at = dstOffset + done;
+
+            if (p.reversed()) {
+                readSource(p.source(), p.start() + p.length() - local - count, dst, at, count, scratch);
+                reverseInPlace(dst[0], at, count);
+                reverseInPlace(dst[1], at, count);
+            } else {
+                readSource(p.source(), p.start() + local, dst, at, count, scratch);
+            }
+            if (p.gain() != 1f) {
+                scaleInPlace(dst[0], at, count, p.gain());
+                scaleInPlace(dst[1], at, count, p.gain());
+            }
+            done += count;
+            idx++;
+        }
+        return done;
+    }
+
+    private static void readSource(SampleStore source, long from, float[][] dst, int at, int count, RenderScratch scratch) {
+        if (scratch == null) source.read(from, dst, at, count);
+        else source.readRealtime(from, dst, at, count, scratch);
+    }
+
+    public void visitSources(long from, long to, SourceVisitor visitor) {
+        long start = Math.max(0, from);
+        long end = Math.min(frameLength, to);
+        if (start >= end) return;
+
+        int idx = indexOf(start);
+        while (idx < pieces.size() && offsets[idx] < end) {
+            Piece p = pieces.get(idx);
+            long pStart = Math.max(start, offsets[idx]) - offsets[idx];
+            long pEnd = Math.min(end, offsets[idx] + p.length()) - offsets[idx];
+            Piece sub = p.sub(pStart, pEnd - pStart);
+            visitor.visit(sub.source(), sub.start(), sub.start() + sub.length(), sub.gain());
+            idx++;
+        }
+    }
+
+    @Override
+    public float[][] toArray() {
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Segment is too long to materialize on the heap");
+        }
+        float[][] out = new float[2][(int) frameLength];
+        read(0, out, 0, (int) frameLength);
+        return out;
+    }
+
+    private void appendRange(Builder b, long from, long to) {
+        if (from >= to) return;
+        int idx = indexOf(from);
+        while (idx < pieces.size() && offsets[idx] < to) {
+            Piece p = pieces.get(idx);
+            long pStart = Math.max(from, offsets[idx]) - offsets[idx];
+            long pEnd = Math.min(to, offsets[idx] + p.length()) - offsets[idx];
+            b.add(p.sub(pStart, pEnd - pStart));
+            idx++;
+        }
+    }
+
+    private int indexOf(long frame) {
+        int lo = 0, hi = offsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= frame) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private static void reverseInPlace(float[] a, int from, int len) {
+        for (int l = from, r = from + len - 1; l < r; l++, r--) {
+            float t = a[l];
+            a[l] = a[r];
+            a[r] = t;
+        }
+    }
+
+    private static void scaleInPlace(float[] a, int from, int len, float gain) {
+        for (int i = from; i < from + len; i++) a[i] *= gain;
+    }
+
+    private static final class Builder {
+        private final List<Piece> out = new ArrayList<>();
+
+        void add(Piece p) {
+            if (p.length() <= 0) return;
+            if (!out.isEmpty()) {
+                Piece last = out.get(out.size() - 1);
+                if (last.source() == p.source() && last.reversed() == p.reversed() && last.gain() == p.gain()) {
+                    if (!p.reversed() && last.start() + last.length() == p.start()) {
+                        out.set(out.size() - 1, new Piece(p.source(), last.start(), last.length() + p.length(), false, p.gain()));
+                        return;
+                    }
+                    if (p.reversed() && p.start() + p.length() == last.start()) {
+                        out.set(out.size() - 1, new Piece(p.source(), p.start(), last.length() + p.length(), true, p.gain()));
+                        return;
+                    }
+                }
+            }
+            out.add(p);
+        }
+
+        PieceTable build() {
+            return out.isEmpty() ? EMPTY : new PieceTable(out);
+        }
+    }
+}
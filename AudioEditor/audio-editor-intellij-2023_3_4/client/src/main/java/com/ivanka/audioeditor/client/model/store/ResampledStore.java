@@ -0,0 +1,48 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import com.ivanka.audioeditor.client.audio.Resampler;
+
+// Another store seen at a different sample rate. Frames are converted as they are read, so an import
+// at a foreign rate is usable immediately and never needs a second copy at the project rate.
+public final class ResampledStore implements SampleStore {
+
+    private final SampleStore source;
+    private final Resampler resampler;
+    private final long frameLength;
+
+    public ResampledStore(SampleStore source, float sourceRate, float targetRate) {
+        this.source = source;
+        this.resampler = Resampler.of(sourceRate, targetRate);
+        this.frameLength = resampler.outputLength(source.getFrameLength());
+    }
+
+    public SampleStore getSource() {
+        return source;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        return resampler.read(source, fromFrame, dst, dstOffset, frames);
+    }
+
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return resampler.read(source, fromFrame, dst, dstOffset, frames, scratch.input());
+    }
+
+    @Override
+    public float[][] toArray() {
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Segment is too long to materialize on the heap");
+        }
+        float[][] out = new float[2][(int) frameLength];
+        read(0, out, 0, (int) frameLength);
+        return out;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+
+public interface SampleStore {
+
+    long getFrameLength();
+
+    int read(long fromFrame, float[][] dst, int dstOffset, int frames);
+
+    // Same contract as FrameSource.readRealtime
+    default int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        return read(fromFrame, dst, dstOffset, frames);
+    }
+
+    float[][] toArray();
+}
@@ -0,0 +1,191 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import com.ivanka.audioeditor.client.audio.TimeStretch;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Tempo-changed view of another store. Its length is known up front, so it can be spliced into a
+// segment immediately. Audio is stretched a block at a time around whatever is read and kept in a small
+// direct-mapped cache, so memory stays bounded however long the selection is and a read far into it
+// does not wait for everything before it. A realtime read never stretches: a block that is not cached
+// yet reads as silence and is queued for the fill thread, which publishes it with a volatile write.
+public final class StretchedStore implements SampleStore {
+
+    private static final int CACHE_BLOCKS = Math.max(2, Integer.getInteger("audioeditor.stretch.cacheBlocks", 8));
+
+    private static final ExecutorService RENDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stretch-render");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Stores with a block wanted by a realtime reader, linked through nextRequest. Pushing is one CAS and
+    // allocates nothing, so the playback thread can queue work without locking
+    private static final AtomicReference<StretchedStore> REQUESTS = new AtomicReference<>();
+    private static final Thread FILL = new Thread(StretchedStore::fillLoop, "stretch-fill");
+
+    static {
+        FILL.setDaemon(true);
+        FILL.start();
+    }
+
+    private record Block(long index, float[][] samples) {}
+
+    private final SampleStore source;
+    private final double tempo;
+    private final TimeStretch stretch;
+    private final long frameLength;
+    private final AtomicReferenceArray<Block> cache = new AtomicReferenceArray<>(CACHE_BLOCKS);
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private volatile long wanted = -1;
+    private StretchedStore nextRequest;
+
+    public StretchedStore(SampleStore source, double tempo, float sampleRate) {
+        this.source = source;
+        this.tempo = tempo;
+        this.stretch = new TimeStretch(source, tempo, sampleRate);
+        this.frameLength = stretch.getFrameLength();
+    }
+
+    // Builds the waveform summary in the background so the first redraw does not have to wait, then
+    // stretches the opening blocks again so playback from the start of the edit finds them cached
+    public void prefetch() {
+        RENDER.submit(() -> {
+            PeakPyramid.of(this);
+            if (tempo == 1.0) return;
+            long warm = Math.min(stretch.getBlockCount(), CACHE_BLOCKS / 2);
+            for (long b = 0; b < warm; b++) block(b);
+        });
+    }
+
+    public SampleStore getSource() {
+        return source;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+        if (tempo == 1.0) return source.read(fromFrame, dst, dstOffset, frames);
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        int blockFrames = stretch.getBlockFrames();
+        int done = 0;
+        while (done < n) {
+            long pos = fromFrame + done;
+            long index = pos / blockFrames;
+            int local = (int) (pos - index * blockFrames);
+            float[][] b = block(index);
+            int count = Math.min(n - done, b[0].length - local);
+            System.arraycopy(b[0], local, dst[0], dstOffset + done, count);
+            System.arraycopy(b[1], local, dst[1], dstOffset + done, count);
+            done += count;
+        }
+        return n;
+    }
+
+    // Copies cached blocks only; frames of a missing block are zeroed and the block is requested. The
+    // fill thread also stretches the block after the one requested, so sequential playback stays ahead
+    @Override
+    public int readRealtime(long fromFrame, float[][] dst, int dstOffset, int frames, RenderScratch scratch) {
+        if (tempo == 1.0) return source.readRealtime(fromFrame, dst, dstOffset, frames, scratch);
+        if (frames <= 0 || fromFrame < 0 || fromFrame >= frameLength) return 0;
+
+        int n = (int) Math.min(frames, frameLength - fromFrame);
+        int blockFrames = stretch.getBlockFrames();
+        long index = 0;
+        boolean missed = false;
+        int done = 0;
+        while (done < n) {
+            long pos = fromFrame + done;
+            index = pos / blockFrames;
+            int local = (int) (pos - index * blockFrames);
+            int count = (int) Math.min(n - done, Math.min(blockFrames, frameLength - index * blockFrames) - local);
+            float[][] b = cached(index);
+            if (b != null) {
+                System.arraycopy(b[0], local, dst[0], dstOffset + done, count);
+                System.arraycopy(b[1], local, dst[1], dstOffset + done, count);
+            } else {
+                Arrays.fill(dst[0], dstOffset + done, dstOffset + done + count, 0f);
+                Arrays.fill(dst[1], dstOffset + done, dstOffset + done + count, 0f);
+                request(index);
+                missed = true;
+            }
+            done += count;
+        }
+        if (!missed && index + 1 < stretch.getBlockCount() && cached(index + 1) == null) request(index + 1);
+        return n;
+    }
+
+    @Override
+    public float[][] toArray() {
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Segment is too long to materialize on the heap");
+        }
+        float[][] out = new float[2][(int) frameLength];
+        read(0, out, 0, (int) frameLength);
+        return out;
+    }
+
+    // Two readers may render the same missing block at once; both get identical samples, so the
+    // second one to publish simply replaces the first
+    private float[][] block(long index) {
+        float[][] samples = cached(index);
+        if (samples != null) return samples;
+        samples = stretch.renderBlock(index);
+        cache.set((int) (index % CACHE_BLOCKS), new Block(index, samples));
+        return samples;
+    }
+
+    private float[][] cached(long index) {
+        Block b = cache.get((int) (index % CACHE_BLOCKS));
+        return b != null && b.index() == index ? b.samples() : null;
+    }
+
+    // Only the latest wanted block is kept; a reader that has moved on no longer needs the earlier one
+    private void request(long index) {
+        wanted = index;
+        if (!queued.compareAndSet(false, true)) return;
+        StretchedStore head;
+        do {
+            head = REQUESTS.get();
+            nextRequest = head;
+        } while (!REQUESTS.compareAndSet(head, this));
+        LockSupport.unpark(FILL);
+    }
+
+    private static void fillLoop() {
+        while (true) {
+            StretchedStore s = REQUESTS.getAndSet(null);
+            if (s == null) {
+                LockSupport.park(REQUESTS);
+                continue;
+            }
+            while (s != null) {
+                StretchedStore next = s.nextRequest;
+                s.nextRequest = null;
+                s.queued.set(false);
+                try {
+                    long index = s.wanted;
+                    long count = s.stretch.getBlockCount();
+                    if (index >= 0 && index < count) s.block(index);
+                    if (index + 1 < count) s.block(index + 1);
+                } catch (RuntimeException ex) {
+                    System.out.println("Stretch render failed: " + ex.getMessage());
+                }
+                s = next;
+            }
+        }
+    }
+}
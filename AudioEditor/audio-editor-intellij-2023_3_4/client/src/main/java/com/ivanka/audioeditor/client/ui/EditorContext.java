@@ -3,6 +3,7 @@ package com.ivanka.audioeditor.client.ui;
 import com.ivanka.audioeditor.client.model.ProjectModel;
 import com.ivanka.audioeditor.client.model.ProjectTrack;
 import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.store.LivePeaks;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
@@ -33,9 +34,13 @@ public interface EditorContext {
     void setActiveTrackCursor(double frac);
     double getActiveTrackCursor();
 
-    void drawWaveform(Canvas c, String trackName);
+    void drawWaveform(WaveformLayers view, String trackName);
+    void drawSelection(Canvas c, String trackName);
     void drawEmptyBackground(Canvas c, String msg);
     void redrawTrack(String trackName);
+    void drawRecording(String trackName, LivePeaks peaks);
+    // Width in pixels of the track's waveform canvas, 0 when the track has no view
+    double getCanvasWidth(String trackName);
     void toast(String msg);
     void alertInfo(String msg);
     void alertWarn(String msg);
@@ -50,5 +55,21 @@ public interface EditorContext {
         public double width() {
             return Math.abs(xEnd - xStart);
         }
+
+        // Frames [start, end) of totalFrames under the selection, for a canvas canvasWidth pixels wide
+        public long[] toSampleRange(long totalFrames, double canvasWidth) {
+            if (canvasWidth <= 0) return new long[]{0, 0};
+            double L = Math.max(0, Math.min(left(), canvasWidth));
+            double R = Math.max(0, Math.min(right(), canvasWidth));
+            long start = (long) Math.floor(totalFrames * (L / canvasWidth));
+            long end   = (long) Math.ceil (totalFrames * (R / canvasWidth));
+            end = Math.min(end, totalFrames);
+            if (end <= start) end = Math.min(start + 1, totalFrames);
+            return new long[]{start, end};
+        }
+    }
+
+    default long[] selectionToSampleRange(String trackName, Selection sel, long totalFrames) {
+        return sel.toSampleRange(totalFrames, getCanvasWidth(trackName));
     }
 }
\ No newline at end of file
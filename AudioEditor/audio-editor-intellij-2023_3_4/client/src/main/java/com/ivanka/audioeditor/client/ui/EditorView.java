@@ -1,6 +1,7 @@
 package com.ivanka.audioeditor.client.ui;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ivanka.audioeditor.client.audio.Envelope;
 import com.ivanka.audioeditor.client.core.AudioEditor;
 import com.ivanka.audioeditor.client.core.events.EditorEvent;
 import com.ivanka.audioeditor.client.core.events.EditorEventType;
@@ -14,8 +15,13 @@ import com.ivanka.audioeditor.client.model.composite.AudioSegment;
 import com.ivanka.audioeditor.client.model.composite.AudioTrack;
 import com.ivanka.audioeditor.client.model.composite.AudioComponent;
 import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import com.ivanka.audioeditor.client.model.composite.TrackTimeline;
+import com.ivanka.audioeditor.client.model.store.LivePeaks;
+import com.ivanka.audioeditor.client.model.store.PeakPyramid;
+import com.ivanka.audioeditor.client.model.store.SampleStore;
 import com.ivanka.audioeditor.client.net.ApiClient;
 import com.ivanka.audioeditor.client.ui.tree.ProjectTreeItem;
+import com.ivanka.audioeditor.common.dto.AutomationPointDTO;
 import com.ivanka.audioeditor.common.dto.FullProjectDTO;
 import com.ivanka.audioeditor.common.dto.SegmentDTO;
 import com.ivanka.audioeditor.common.dto.TrackDTO;
@@ -55,6 +61,7 @@ public class EditorView implements EditorContext {
     private String activeTrackName = null;
     private TreeItem<String> currentProjectNode;
     private final VBox tracksPane = new VBox(15);
+    private final WaveformRasterizer rasterizer = new WaveformRasterizer();
     private final Stage stage;
     private double activeTrackCursorFrac = 0.0;
 
@@ -76,12 +83,16 @@ public class EditorView implements EditorContext {
         Button refresh = new Button("Refresh");
         Button playProject = new Button("Play Project");
         Button stopProject = new Button("Stop Project");
+        Button undo = new Button("Undo");
+        Button redo = new Button("Redo");
 
         playProject.setOnAction(ev -> playComposite());
         stopProject.setOnAction(ev -> stopComposite());
         saveProject.setOnAction(ev -> saveAllChanges());
+        undo.setOnAction(ev -> AudioEditor.getInstance().notifyObservers(new EditorEvent(EditorEventType.EDIT_UNDO)));
+        redo.setOnAction(ev -> AudioEditor.getInstance().notifyObservers(new EditorEvent(EditorEventType.EDIT_REDO)));
 
-        top.getChildren().addAll(newProject, saveProject, new Separator(), addTrack, importAudio, exportAudio, refresh, new Separator(), playProject, stopProject);
+        top.getChildren().addAll(newProject, saveProject, new Separator(), addTrack, importAudio, exportAudio, refresh, new Separator(), undo, redo, new Separator(), playProject, stopProject);
         top.setAlignment(Pos.CENTER_LEFT);
         root.setTop(top);
 
@@ -115,6 +126,9 @@ public class EditorView implements EditorContext {
         var exportModule        = new ExportModule(this);
         var notificationModule  = new NotificationModule(this);
         var clipboardModule     = new ClipboardModule(this);
+        var historyModule       = new HistoryModule(this);
+        var recordingModule     = new RecordingModule(this);
+        var automationModule    = new AutomationModule(this);
 
         mediator.register(projectModule.key(),       projectModule);
         mediator.register(trackModule.key(),         trackModule);
@@ -124,6 +138,9 @@ public class EditorView implements EditorContext {
         mediator.register(exportModule.key(),        exportModule);
         mediator.register(notificationModule.key(),  notificationModule);
         mediator.register(clipboardModule.key(),     clipboardModule);
+        mediator.register(historyModule.key(),       historyModule);
+        mediator.register(recordingModule.key(),     recordingModule);
+        mediator.register(automationModule.key(),    automationModule);
         editor.attach(new com.ivanka.audioeditor.client.core.observers.MediatorObserver(mediator));
 
         newProject.setOnAction(e -> {
@@ -160,6 +177,13 @@ public class EditorView implements EditorContext {
 
         root.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
             if (currentProjectNode == null) return;
+            if (e.isControlDown() && (e.getCode() == KeyCode.Y || (e.isShiftDown() && e.getCode() == KeyCode.Z))) {
+                editor.notifyObservers(new EditorEvent(EditorEventType.EDIT_REDO)); e.consume();
+                return;
+            } else if (e.isControlDown() && e.getCode() == KeyCode.Z) {
+                editor.notifyObservers(new EditorEvent(EditorEventType.EDIT_UNDO)); e.consume();
+                return;
+            }
             String trackName = getActiveTrackName();
             if (trackName == null) return;
 
@@ -186,15 +210,31 @@ public class EditorView implements EditorContext {
             try {
                 var api = ApiClient.getInstance();
                 int savedCount = 0;
+                float projectRate = audioProject.getFormat().getSampleRate();
+                List<ProjectTrack> serverTracks = trackCache.getOrDefault(project.id, List.of());
                 for (AudioComponent t : audioProject.getChildren()) {
                     if (t instanceof AudioTrack track) {
+                        Optional<Long> trackId = serverTracks.stream()
+                                .filter(pt -> pt.getTrackName().equals(track.getName()))
+                                .findFirst().map(ProjectTrack::getId);
+                        if (trackId.isPresent()) {
+                            List<AutomationPointDTO> automation = new ArrayList<>();
+                            automation.addAll(track.getControls().getGainEnvelope().toDto(Envelope.GAIN, projectRate));
+                            automation.addAll(track.getControls().getPanEnvelope().toDto(Envelope.PAN, projectRate));
+                            api.postJson("/tracks/" + trackId.get() + "/automation", automation);
+                        }
                         for (AudioComponent s : track.getChildren()) {
                             if (s instanceof AudioSegment seg) {
                                 if (seg.getId() > 0) {
                                     File temp = File.createTempFile("save-" + seg.getName(), ".wav");
                                     seg.exportTo(temp, "wav");
-                                    api.postMultipart("/segments/" + seg.getId() + "/upload", Map.of(), temp);
+                                    float rate = seg.getFormat().getSampleRate();
+                                    api.postMultipart("/segments/" + seg.getId() + "/upload", Map.of(
+                                            "startTime", String.valueOf(seg.getStartFrame() / (double) rate),
+                                            "endTime", String.valueOf(seg.getEndFrame() / (double) rate)), temp);
                                     temp.delete();
+                                    api.postJson("/segments/" + seg.getId() + "/automation",
+                                            seg.getGainEnvelope().toDto(Envelope.GAIN, rate));
                                     savedCount++;
                                 }
                             }
@@ -232,6 +272,13 @@ public class EditorView implements EditorContext {
                         int tOrder = tDto.order();
 
                         AudioTrack audioTrack = new AudioTrack(tName);
+                        audioTrack.getControls().setVolume(tDto.volume());
+                        audioTrack.getControls().setMuted(tDto.isMuted());
+                        float projectRate = reconstructed.getFormat().getSampleRate();
+                        audioTrack.getControls().setGainEnvelope(
+                                Envelope.fromDto(tDto.automation(), Envelope.GAIN, 1f, projectRate));
+                        audioTrack.getControls().setPanEnvelope(
+                                Envelope.fromDto(tDto.automation(), Envelope.PAN, 0f, projectRate));
                         uiTracks.add(new ProjectTrack(tId, tName, tOrder));
 
                         if (tDto.segments() != null) {
@@ -243,13 +290,22 @@ public class EditorView implements EditorContext {
                                     try {
                                         api.downloadFile(fullPath, tempWav);
                                         AudioFormat[] fmt = new AudioFormat[1];
-                                        float[][] samples = PcmUtils.readWavStereo(tempWav, fmt);
-                                        AudioSegment seg = new AudioSegment(filename, samples, fmt[0]);
+                                        SampleStore store = PcmUtils.readWavToStore(tempWav, reconstructed.getFormat().getSampleRate(), fmt);
+                                        PeakPyramid.warm(store);
+                                        AudioSegment seg = new AudioSegment(filename, store, fmt[0]);
                                         seg.setId(sDto.id());
+                                        seg.setGainEnvelope(Envelope.fromDto(sDto.automation(), Envelope.GAIN, 1f, fmt[0].getSampleRate()));
+                                        // segments saved without a position follow the previous one
+                                        float rate = fmt[0].getSampleRate();
+                                        seg.setStartFrame(sDto.endTime() > sDto.startTime()
+                                                ? Math.round(sDto.startTime() * rate)
+                                                : audioTrack.getFrameLength());
                                         audioTrack.add(seg);
                                         System.out.println("Restored segment: " + filename + " (ID: " + sDto.id() + ")");
                                     } catch (Exception ex) {
                                         System.err.println("Failed to download segment: " + filename);
+                                    } finally {
+                                        tempWav.delete();
                                     }
                                 }
                             }
@@ -277,75 +333,80 @@ public class EditorView implements EditorContext {
 
     public void playComposite() {
         try {
-            if (audioProject != null) {
-                CompletableFuture.runAsync(() -> {
-                    try { audioProject.play(); } catch (Exception e) {
-                        e.printStackTrace();
-                        Platform.runLater(() -> alertError("Playback error: " + e.getMessage()));
-                    }
-                });
-            }
+            if (audioProject != null) audioProject.play();
         } catch (Exception ex) {
             ex.printStackTrace();
-            alertError("Failed to start playback thread.");
+            alertError("Playback error: " + ex.getMessage());
         }
     }
     public void stopComposite() { try { if (audioProject != null) audioProject.stop(); } catch (Exception ex) { ex.printStackTrace(); } }
 
     @Override public void redrawTrack(String trackName) {
+        WaveformLayers layers = findLayers(trackName);
+        if (layers != null) {
+            drawWaveform(layers, trackName);
+            drawSelection(layers.getSelectionCanvas(), trackName);
+        }
+    }
+
+    @Override public void drawRecording(String trackName, LivePeaks peaks) {
+        WaveformLayers layers = findLayers(trackName);
+        if (layers == null) return;
+        Canvas canvas = layers.getBackgroundCanvas();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(Color.web("#1a0b0b"));
+        g.fillRoundRect(0, 0, canvas.getWidth(), canvas.getHeight(), 16, 16);
+        rasterizer.render(layers, peaks);
+    }
+
+    @Override public double getCanvasWidth(String trackName) {
+        WaveformLayers layers = findLayers(trackName);
+        return layers != null ? layers.getCanvasWidth() : 0;
+    }
+
+    private WaveformLayers findLayers(String trackName) {
         for (var node : tracksPane.getChildren()) {
             if (node instanceof VBox box) {
                 if (!box.getChildren().isEmpty() && box.getChildren().get(0) instanceof Label lbl) {
-                    if (lbl.getText().equals(trackName) && box.getChildren().size() > 1 && box.getChildren().get(1) instanceof Canvas c) {
-                        drawWaveform(c, trackName);
-                        return;
+                    if (lbl.getText().equals(trackName) && box.getChildren().size() > 1 && box.getChildren().get(1) instanceof WaveformLayers layers) {
+                        return layers;
                     }
                 }
             }
         }
+        return null;
     }
 
     @Override
-    public void drawWaveform(Canvas canvas, String trackName) {
-        AudioSegment seg = getMainSegment(trackName);
-        var sel = selections.computeIfAbsent(trackName, k -> new Selection());
+    public void drawWaveform(WaveformLayers view, String trackName) {
+        AudioTrack track = getTrack(trackName);
+        Canvas canvas = view.getBackgroundCanvas();
 
         GraphicsContext g = canvas.getGraphicsContext2D();
         g.setFill(Color.web("#0b0f14"));
         g.fillRoundRect(0, 0, canvas.getWidth(), canvas.getHeight(), 16, 16);
-        g.setStroke(Color.web("#38bdf8"));
-        double mid = canvas.getHeight() / 2.0;
 
-        if (seg == null) {
+        if (track == null || track.getChildren().isEmpty()) {
+            rasterizer.cancel(view);
             drawEmptyBackground(canvas, "No audio data.");
             return;
         }
-        float[][] samples = seg.getSamples();
-        if (samples == null || samples.length == 0 || samples[0].length == 0) {
+        TrackTimeline timeline = track.getTimeline();
+        if (timeline.getFrameLength() == 0) {
+            rasterizer.cancel(view);
             drawEmptyBackground(canvas, "Empty.");
             return;
         }
-        float[] leftChannel = samples[0];
-        int totalSamples = leftChannel.length;
-        int width = (int) canvas.getWidth();
-        int samplesPerPixel = Math.max(1, totalSamples / width);
-
-        for (int x = 0; x < width; x++) {
-            float min = 1.0f;
-            float max = -1.0f;
-            int startSample = x * samplesPerPixel;
-            for (int i = 0; i < samplesPerPixel; i++) {
-                int idx = startSample + i;
-                if (idx >= totalSamples) break;
-                float val = leftChannel[idx];
-                if (val < min) min = val;
-                if (val > max) max = val;
-            }
-            double yMax = mid - (max * (mid - 6));
-            double yMin = mid - (min * (mid - 6));
-            g.strokeLine(x, yMin, x, yMax);
-        }
-        if (sel != null && sel.isActive()) {
+        rasterizer.render(view, timeline);
+    }
+
+    @Override
+    public void drawSelection(Canvas canvas, String trackName) {
+        var sel = selections.computeIfAbsent(trackName, k -> new Selection());
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (sel.isActive()) {
             g.setFill(Color.web("#22d3ee40"));
             g.fillRect(sel.left(), 0, sel.width(), canvas.getHeight());
             g.setStroke(Color.web("#06b6d4"));
@@ -425,5 +486,4 @@ public class EditorView implements EditorContext {
     private void drawPlaceholder() { tracksPane.getChildren().clear(); tracksPane.getChildren().add(new Label("Select project")); }
     private static <V> Map<String, V> namespacedMap(Supplier<Long> s, Map<String, V> b) { return b; }
     private AudioTrack getTrack(String name) { if(audioProject==null) return null; return (AudioTrack)audioProject.getChildren().stream().filter(c->c.getName().equals(name)).findFirst().orElse(null); }
-    private AudioSegment getMainSegment(String name) { AudioTrack t = getTrack(name); return (t!=null && !t.getChildren().isEmpty()) ? (AudioSegment)t.getChildren().get(0) : null; }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.ivanka.audioeditor.client.ui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Waveform pixels come from a background-rendered image and are swapped only when samples change;
+// selection and playhead live on their own transparent canvases on top so moving them never
+// touches the waveform.
+public class WaveformLayers extends StackPane {
+
+    private final Canvas background;
+    private final ImageView waveform = new ImageView();
+    private final Canvas selection;
+    private final Canvas cursor;
+
+    private final AtomicLong renderGeneration = new AtomicLong();
+    private Future<?> pendingRender;
+
+    public WaveformLayers(double width, double height) {
+        this.background = new Canvas(width, height);
+        this.selection = new Canvas(width, height);
+        this.cursor = new Canvas(width, height);
+
+        waveform.setMouseTransparent(true);
+        selection.setMouseTransparent(true);
+        cursor.setMouseTransparent(true);
+
+        setMaxSize(width, height);
+        getChildren().addAll(background, waveform, selection, cursor);
+    }
+
+    public Canvas getBackgroundCanvas() { return background; }
+    public Canvas getSelectionCanvas() { return selection; }
+    public Canvas getCursorCanvas() { return cursor; }
+
+    public double getCanvasWidth() { return background.getWidth(); }
+    public double getCanvasHeight() { return background.getHeight(); }
+
+    void setWaveformImage(Image img) { waveform.setImage(img); }
+
+    long nextRenderGeneration() { return renderGeneration.incrementAndGet(); }
+    long getRenderGeneration() { return renderGeneration.get(); }
+
+    synchronized void replacePendingRender(Future<?> task) {
+        if (pendingRender != null && pendingRender != task) pendingRender.cancel(true);
+        pendingRender = task;
+    }
+}
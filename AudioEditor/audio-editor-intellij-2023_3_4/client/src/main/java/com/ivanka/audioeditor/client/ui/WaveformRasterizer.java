@@ -0,0 +1,106 @@
+package com.ivanka.audioeditor.client.ui;
+
+import com.ivanka.audioeditor.client.model.composite.TrackTimeline;
+import com.ivanka.audioeditor.client.model.store.LivePeaks;
+import javafx.application.Platform;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Computes column extents from the clips' peak pyramids and writes ARGB pixels on a worker pool,
+// then swaps the finished image in on the FX thread. A newer request for the same view
+// cancels the older one, and a render that lost the race is simply dropped.
+public class WaveformRasterizer {
+
+    private static final int PEAK_ARGB = 0xFF38BDF8;
+    private static final int RMS_ARGB = 0xFF7DD3FC;
+
+    private final ExecutorService pool;
+
+    public WaveformRasterizer() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "waveform-raster-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    public void render(WaveformLayers view, TrackTimeline timeline) {
+        render(view, timeline.getFrameLength(), timeline::peaks);
+    }
+
+    // A take that is still recording; the whole take so far is fitted to the view
+    public void render(WaveformLayers view, LivePeaks peaks) {
+        render(view, peaks.getFrameLength(), peaks::peaks);
+    }
+
+    private void render(WaveformLayers view, long total, ColumnSource columns) {
+        long gen = view.nextRenderGeneration();
+        int width = (int) view.getCanvasWidth();
+        int height = (int) view.getCanvasHeight();
+
+        Future<?> task = pool.submit(() -> {
+            int[] argb = rasterize(total, columns, width, height, () -> view.getRenderGeneration() != gen);
+            if (argb == null) return;
+
+            WritableImage img = new WritableImage(width, height);
+            img.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+
+            Platform.runLater(() -> {
+                if (view.getRenderGeneration() == gen) view.setWaveformImage(img);
+            });
+        });
+        view.replacePendingRender(task);
+    }
+
+    public void cancel(WaveformLayers view) {
+        view.nextRenderGeneration();
+        view.replacePendingRender(null);
+        view.setWaveformImage(null);
+    }
+
+    private interface Staleness {
+        boolean isStale();
+    }
+
+    private interface ColumnSource {
+        void peaks(long from, long to, float[] out);
+    }
+
+    private static int[] rasterize(long total, ColumnSource columns, int width, int height, Staleness stale) {
+        int[] argb = new int[width * height];
+        if (total == 0) return argb;
+
+        double mid = height / 2.0;
+        double scale = mid - 6;
+        float[] peak = new float[3];
+
+        for (int x = 0; x < width; x++) {
+            if ((x & 63) == 0 && (stale.isStale() || Thread.currentThread().isInterrupted())) return null;
+
+            long from = x * total / width;
+            long to = Math.max(from + 1, (x + 1) * total / width);
+            columns.peaks(from, to, peak);
+
+            fillColumn(argb, width, height, x, mid - peak[1] * scale, mid - peak[0] * scale, PEAK_ARGB);
+
+            double rms = Math.min(peak[2], Math.min(peak[1], -peak[0]));
+            if (rms > 0) fillColumn(argb, width, height, x, mid - rms * scale, mid + rms * scale, RMS_ARGB);
+        }
+        return argb;
+    }
+
+    private static void fillColumn(int[] argb, int width, int height, int x, double yTop, double yBottom, int color) {
+        int y0 = Math.max(0, (int) Math.floor(Math.min(yTop, yBottom)));
+        int y1 = Math.min(height - 1, (int) Math.ceil(Math.max(yTop, yBottom)));
+        if (y1 < y0) y1 = y0;
+        for (int y = y0; y <= y1; y++) argb[y * width + x] = color;
+    }
+}
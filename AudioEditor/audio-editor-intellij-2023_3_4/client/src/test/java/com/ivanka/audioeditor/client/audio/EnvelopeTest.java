@@ -0,0 +1,68 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.common.dto.AutomationPointDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Block fills against per-frame evaluation for linear and exponential ramps, plus editing and the DTO round trip
+class EnvelopeTest {
+
+    private static final Envelope CURVE = Envelope.of(1f, List.of(
+            new Envelope.Point(1000, 0.0, false),
+            new Envelope.Point(5000, 1.0, true),
+            new Envelope.Point(9000, 0.1, false),
+            new Envelope.Point(9500, 0.1, false),
+            new Envelope.Point(12000, 2.0, false)));
+
+    @Test
+    void fillAgreesWithValueAt() {
+        float[] out = new float[1500];
+        for (long from = 0; from < 13000; from += 613) {
+            CURVE.fill(from, out, out.length);
+            for (int i = 0; i < out.length; i++) {
+                assertEquals(CURVE.valueAt(from + i), out[i], 1e-4, "frame " + (from + i));
+            }
+        }
+    }
+
+    @Test
+    void holdsTheEndValuesOutsideThePoints() {
+        assertEquals(0f, CURVE.valueAt(0));
+        assertEquals(2f, CURVE.valueAt(50000));
+        assertEquals(0.5f, CURVE.valueAt(3000), 1e-6);
+        assertEquals(1f, Envelope.flat(1f).valueAt(123));
+    }
+
+    @Test
+    void isFlatOnlyWhereTheCurveDoesNotMove() {
+        assertTrue(CURVE.isFlat(0, 1000));
+        assertFalse(CURVE.isFlat(0, 1001));
+        assertTrue(CURVE.isFlat(9100, 400));
+        assertFalse(CURVE.isFlat(9100, 401));
+        assertTrue(CURVE.isFlat(12000, 100000));
+        assertTrue(Envelope.flat(0.3f).isFlat(0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void withRampReplacesThePointsInsideTheRange() {
+        Envelope e = CURVE.withRamp(4000, 10000, 0.2f, 0.8f, false);
+        assertEquals(4, e.getPoints().size());
+        assertEquals(0.5f, e.valueAt(7000), 1e-6);
+        assertEquals(0f, CURVE.valueAt(1000));
+        assertTrue(e.cleared().isEmpty());
+        assertEquals(1f, e.cleared().valueAt(7000));
+    }
+
+    @Test
+    void dtoRoundTripKeepsTheLane() {
+        List<AutomationPointDTO> dto = CURVE.toDto(Envelope.GAIN, 48000);
+        assertEquals(5, dto.size());
+        assertEquals(CURVE.getPoints(), Envelope.fromDto(dto, Envelope.GAIN, 1f, 48000).getPoints());
+        assertTrue(Envelope.fromDto(dto, Envelope.PAN, 0f, 48000).isEmpty());
+    }
+}
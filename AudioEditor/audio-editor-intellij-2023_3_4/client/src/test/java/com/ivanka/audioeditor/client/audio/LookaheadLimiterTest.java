@@ -0,0 +1,72 @@
+package com.ivanka.audioeditor.client.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The ceiling holds on loud input, quiet input comes out delayed but untouched, and reset starts clean
+class LookaheadLimiterTest {
+
+    static float[][] noise(int frames, float amplitude, long seed) {
+        Random rnd = new Random(seed);
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = (rnd.nextFloat() * 2 - 1) * amplitude;
+            s[1][i] = (rnd.nextFloat() * 2 - 1) * amplitude;
+        }
+        return s;
+    }
+
+    @Test
+    void outputNeverExceedsTheCeiling() {
+        for (boolean truePeak : new boolean[]{false, true}) {
+            float ceiling = 0.5f;
+            LookaheadLimiter limiter = new LookaheadLimiter(48000, ceiling, truePeak);
+            float[][] block = noise(48000, 2f, 6);
+            limiter.process(block, block[0].length);
+            for (int i = 0; i < block[0].length; i++) {
+                assertTrue(Math.abs(block[0][i]) <= ceiling * 1.0001f, "left " + i + " true peak " + truePeak);
+                assertTrue(Math.abs(block[1][i]) <= ceiling * 1.0001f, "right " + i + " true peak " + truePeak);
+            }
+        }
+    }
+
+    @Test
+    void quietAudioPassesThroughDelayed() {
+        LookaheadLimiter limiter = new LookaheadLimiter(44100, 0.9f, false);
+        int latency = limiter.getLatency();
+        float[][] src = noise(5000, 0.5f, 7);
+
+        // in two uneven calls, as a renderer would
+        float[][] head = {Arrays.copyOf(src[0], 1234), Arrays.copyOf(src[1], 1234)};
+        float[][] tail = {Arrays.copyOfRange(src[0], 1234, 5000), Arrays.copyOfRange(src[1], 1234, 5000)};
+        limiter.process(head, 1234);
+        limiter.process(tail, 5000 - 1234);
+
+        for (int i = 0; i < 5000; i++) {
+            float[][] out = i < 1234 ? head : tail;
+            int at = i < 1234 ? i : i - 1234;
+            assertEquals(i < latency ? 0f : src[0][i - latency], out[0][at]);
+            assertEquals(i < latency ? 0f : src[1][i - latency], out[1][at]);
+        }
+    }
+
+    @Test
+    void resetClearsTheDelayLineAndGain() {
+        LookaheadLimiter limiter = new LookaheadLimiter(44100, 0.5f, false);
+        float[][] loud = noise(2000, 4f, 8);
+        limiter.process(loud, 2000);
+        limiter.reset();
+
+        float[][] quiet = noise(2000, 0.1f, 9);
+        float[][] block = {quiet[0].clone(), quiet[1].clone()};
+        limiter.process(block, 2000);
+        int latency = limiter.getLatency();
+        for (int i = 0; i < latency; i++) assertEquals(0f, block[0][i]);
+        for (int i = latency; i < 2000; i++) assertEquals(quiet[0][i - latency], block[0][i]);
+    }
+}
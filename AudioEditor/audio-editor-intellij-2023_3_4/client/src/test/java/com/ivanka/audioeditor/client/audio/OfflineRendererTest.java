@@ -0,0 +1,85 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A parallel export against the serial ProjectMixer render of the same project. Track groups are summed
+// in a different order than the mixer's, so the 16-bit samples may differ by one step but no more.
+class OfflineRendererTest {
+
+    static final int LENGTH = 3 * OfflineRenderer.RENDER_BLOCK + 1234;
+
+    // Seven tracks, so the track range is split into groups; clips start at odd frames across block edges
+    static AudioProject project() {
+        AudioProject project = new AudioProject("export");
+        for (int t = 0; t < 7; t++) {
+            AudioTrack track = new AudioTrack("t" + t);
+            int start = t * 9001;
+            track.add(ProjectMixerTest.clip(ProjectMixerTest.tone(LENGTH - start, 110 * (t + 1), 0.1f), start));
+            if (t == 2) track.getControls().setVolume(0.5);
+            if (t == 5) track.getControls().setMuted(true);
+            project.add(track);
+        }
+        return project;
+    }
+
+    @Test
+    void parallelExportMatchesTheSerialMix() throws Exception {
+        ProjectMixer mixer = new ProjectMixer(project());
+        int latency = LookaheadLimiter.forOutput(44100).getLatency();
+        float[][] serial = ProjectMixerTest.render(mixer, ProjectMixer.BLOCK_FRAMES);
+        assertEquals(LENGTH + latency, serial[0].length);
+        byte[] expected = new byte[LENGTH * 4];
+        PcmUtils.toPCM16(serial, latency, LENGTH, expected);
+
+        File wav = File.createTempFile("export-", ".wav");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            OfflineRenderer renderer = new OfflineRenderer(project(), pool);
+            assertEquals(LENGTH, renderer.getFrameLength());
+            try (WavStreamWriter out = new WavStreamWriter(wav, PcmUtils.getStandardFormat())) {
+                renderer.render(out, LookaheadLimiter.forOutput(44100));
+            }
+
+            byte[] file = Files.readAllBytes(wav.toPath());
+            assertEquals(44 + LENGTH * 4, file.length);
+            ByteBuffer actual = ByteBuffer.wrap(file, 44, LENGTH * 4).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer reference = ByteBuffer.wrap(expected).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < LENGTH * 2; i++) {
+                int diff = Math.abs(actual.getShort() - reference.getShort());
+                assertTrue(diff <= 1, "sample " + i + " differs by " + diff);
+            }
+        } finally {
+            pool.shutdown();
+            wav.delete();
+        }
+    }
+
+    @Test
+    void emptyProjectExportsNothing() throws Exception {
+        File wav = File.createTempFile("export-", ".wav");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            OfflineRenderer renderer = new OfflineRenderer(new AudioProject("empty"), pool);
+            assertEquals(0, renderer.getFrameLength());
+            try (WavStreamWriter out = new WavStreamWriter(wav, PcmUtils.getStandardFormat())) {
+                renderer.render(out, LookaheadLimiter.forOutput(44100));
+            }
+            assertEquals(44, wav.length());
+        } finally {
+            pool.shutdown();
+            wav.delete();
+        }
+    }
+}
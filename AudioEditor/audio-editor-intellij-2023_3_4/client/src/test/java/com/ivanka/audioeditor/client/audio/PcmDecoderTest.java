@@ -0,0 +1,183 @@
+package com.ivanka.audioeditor.client.audio;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every supported sample layout decoded to the exact float it encodes, in both byte orders, through
+// chunk boundaries, and from real WAV files written by Java Sound
+class PcmDecoderTest {
+
+    private static final int[] S24 = {0, 1, -1, 8388607, -8388608, 1234567, -7654321};
+    private static final int[] S32 = {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 123456789, -987654321};
+    private static final float[] F32 = {0f, -0f, 1f, -1f, 0.123f, -2.5f, Float.MIN_VALUE};
+
+    static AudioInputStream stream(AudioFormat format, byte[] bytes) {
+        return new AudioInputStream(new ByteArrayInputStream(bytes), format, bytes.length / format.getFrameSize());
+    }
+
+    // Decodes everything in chunks of chunkFrames; channel 0 of each frame is left, the last one right
+    static float[][] decodeAll(AudioInputStream in, int chunkFrames, int frames) throws IOException {
+        PcmDecoder decoder = new PcmDecoder(in, chunkFrames);
+        float[][] out = new float[2][frames];
+        float[][] block = new float[2][chunkFrames];
+        int pos = 0;
+        int n;
+        while ((n = decoder.read(block, 0)) > 0) {
+            assertTrue(n <= chunkFrames);
+            System.arraycopy(block[0], 0, out[0], pos, n);
+            System.arraycopy(block[1], 0, out[1], pos, n);
+            pos += n;
+        }
+        assertEquals(-1, n);
+        assertEquals(frames, pos);
+        return out;
+    }
+
+    // Stereo frames whose right sample is the left one of the mirrored index
+    static byte[] encode(int[] values, int bytes, boolean bigEndian) {
+        ByteBuffer b = ByteBuffer.allocate(values.length * 2 * bytes);
+        for (int i = 0; i < values.length; i++) {
+            putInt(b, values[i], bytes, bigEndian);
+            putInt(b, values[values.length - 1 - i], bytes, bigEndian);
+        }
+        return b.array();
+    }
+
+    private static void putInt(ByteBuffer b, int v, int bytes, boolean bigEndian) {
+        for (int k = 0; k < bytes; k++) {
+            int shift = bigEndian ? 8 * (bytes - 1 - k) : 8 * k;
+            b.put((byte) (v >> shift));
+        }
+    }
+
+    @Test
+    void eightBitSignedAndUnsigned() throws IOException {
+        byte[] raw = {0, (byte) 0x80, 127, (byte) 0xFF, 1, 64};
+        AudioFormat unsigned = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, 2, 2, 44100, false);
+        AudioFormat signed = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 8, 2, 2, 44100, false);
+        float[][] u = decodeAll(stream(unsigned, raw), 2, 3);
+        float[][] s = decodeAll(stream(signed, raw), 2, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(((raw[2 * i] & 0xFF) - 128) / 128f, u[0][i]);
+            assertEquals(((raw[2 * i + 1] & 0xFF) - 128) / 128f, u[1][i]);
+            assertEquals(raw[2 * i] / 128f, s[0][i]);
+            assertEquals(raw[2 * i + 1] / 128f, s[1][i]);
+        }
+        assertEquals(-1f, u[0][0]);
+        assertEquals(-1f, s[1][0]);
+        assertTrue(new PcmDecoder(stream(unsigned, raw), 4).fitsPcm16());
+    }
+
+    @Test
+    void twentyFourAndThirtyTwoBitInBothByteOrders() throws IOException {
+        for (boolean bigEndian : new boolean[]{false, true}) {
+            AudioFormat f24 = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 48000, 24, 2, 6, 48000, bigEndian);
+            float[][] d24 = decodeAll(stream(f24, encode(S24, 3, bigEndian)), 3, S24.length);
+            AudioFormat f32 = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 48000, 32, 2, 8, 48000, bigEndian);
+            float[][] d32 = decodeAll(stream(f32, encode(S32, 4, bigEndian)), 3, S32.length);
+            for (int i = 0; i < S24.length; i++) {
+                assertEquals(S24[i] / 8388608f, d24[0][i], "24-bit " + i);
+                assertEquals(S24[S24.length - 1 - i] / 8388608f, d24[1][i], "24-bit " + i);
+                assertEquals((float) (S32[i] / 2147483648.0), d32[0][i], "32-bit " + i);
+                assertEquals((float) (S32[S32.length - 1 - i] / 2147483648.0), d32[1][i], "32-bit " + i);
+            }
+            assertEquals(-1f, d24[0][4]);
+            assertEquals(-1f, d32[0][4]);
+            assertFalse(new PcmDecoder(stream(f24, new byte[0]), 4).fitsPcm16());
+        }
+    }
+
+    @Test
+    void floatIsBitExact() throws IOException {
+        for (boolean bigEndian : new boolean[]{false, true}) {
+            int[] bits = new int[F32.length];
+            for (int i = 0; i < F32.length; i++) bits[i] = Float.floatToRawIntBits(F32[i]);
+            AudioFormat f = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100, 32, 2, 8, 44100, bigEndian);
+            float[][] d = decodeAll(stream(f, encode(bits, 4, bigEndian)), 4, F32.length);
+            for (int i = 0; i < F32.length; i++) {
+                assertEquals(Float.floatToRawIntBits(F32[i]), Float.floatToRawIntBits(d[0][i]));
+                assertEquals(Float.floatToRawIntBits(F32[F32.length - 1 - i]), Float.floatToRawIntBits(d[1][i]));
+            }
+        }
+    }
+
+    @Test
+    void monoIsDuplicatedAndExtraChannelsAreDropped() throws IOException {
+        AudioFormat mono = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 16, 1, 2, 44100, false);
+        byte[] monoBytes = {0x00, 0x40, 0x00, (byte) 0xC0, (byte) 0xFF, 0x7F};
+        float[][] m = decodeAll(stream(mono, monoBytes), 2, 3);
+        assertEquals(0.5f, m[0][0]);
+        assertEquals(-0.5f, m[1][1]);
+        assertEquals(32767 / 32768f, m[1][2]);
+        assertEquals(1, new PcmDecoder(stream(mono, monoBytes), 2).getChannels());
+
+        AudioFormat quad = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 16, 4, 8, 44100, false);
+        byte[] quadBytes = {0x00, 0x40, 0x00, (byte) 0xC0, 0x00, 0x20, 0x00, 0x10};
+        float[][] q = decodeAll(stream(quad, quadBytes), 2, 1);
+        assertEquals(0.5f, q[0][0]);
+        assertEquals(-0.5f, q[1][0]);
+        assertEquals(2, new PcmDecoder(stream(quad, quadBytes), 2).getChannels());
+    }
+
+    @Test
+    void rejectsUnsupportedLayouts() {
+        AudioFormat twelveBit = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 12, 2, 4, 44100, false);
+        assertThrows(UnsupportedOperationException.class, () -> new PcmDecoder(stream(twelveBit, new byte[0]), 4));
+    }
+
+    @Test
+    void wavFilesWrittenByJavaSoundDecodeExactly() throws Exception {
+        AudioFormat[] formats = {
+                new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 24, 2, 6, 44100, false),
+                new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 32, 2, 8, 44100, false),
+                new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, 2, 2, 44100, false),
+                new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100, 32, 2, 8, 44100, false),
+        };
+        int[] floatBits = new int[F32.length];
+        for (int i = 0; i < F32.length; i++) floatBits[i] = Float.floatToRawIntBits(F32[i]);
+        int[][] values = {S24, S32, {0, 1, 127, -128}, floatBits};
+        for (int k = 0; k < formats.length; k++) {
+            int bytes = formats[k].getSampleSizeInBits() / 8;
+            byte[] data = encode(values[k], bytes, false);
+            File wav = File.createTempFile("decoder-", ".wav");
+            try {
+                AudioSystem.write(stream(formats[k], data), AudioFileFormat.Type.WAVE, wav);
+                float[][] fromFile;
+                try (AudioInputStream in = AudioSystem.getAudioInputStream(wav)) {
+                    fromFile = decodeAll(in, 2, values[k].length);
+                }
+                float[][] direct = decodeAll(stream(formats[k], data), 2, values[k].length);
+                for (int i = 0; i < values[k].length; i++) {
+                    assertEquals(direct[0][i], fromFile[0][i], formats[k] + " frame " + i);
+                    assertEquals(direct[1][i], fromFile[1][i], formats[k] + " frame " + i);
+                }
+            } finally {
+                wav.delete();
+            }
+        }
+    }
+
+    @Test
+    void partialTrailingFrameIsIgnored() throws IOException {
+        AudioFormat f = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100, 16, 2, 4, 44100, false);
+        byte[] bytes = {0x00, 0x40, 0x00, 0x20, 0x11};
+        PcmDecoder decoder = new PcmDecoder(new AudioInputStream(new ByteArrayInputStream(bytes), f, AudioSystem.NOT_SPECIFIED), 8);
+        float[][] block = new float[2][8];
+        assertEquals(1, decoder.read(block, 0));
+        assertEquals(0.25f, block[1][0]);
+        assertEquals(-1, decoder.read(block, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.ivanka.audioeditor.client.audio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Capacity rounding and FIFO order, with each slot's length and epoch, and every slot handed over
+// intact between a producer and a consumer thread waiting on each other
+class PcmRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        PcmRingBuffer ring = new PcmRingBuffer(3, 16);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(ring.writeSlot());
+            ring.commit(16, 0);
+        }
+        assertNull(ring.writeSlot());
+        ring.readSlot();
+        ring.release();
+        assertNotNull(ring.writeSlot());
+    }
+
+    @Test
+    void slotsComeOutInOrderWithTheirLengthAndEpoch() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+        assertNull(ring.readSlot());
+        for (int i = 1; i <= 3; i++) {
+            byte[] slot = ring.writeSlot();
+            slot[0] = (byte) i;
+            ring.commit(i, 10 + i);
+        }
+        for (int i = 1; i <= 3; i++) {
+            byte[] slot = ring.readSlot();
+            assertEquals(i, slot[0]);
+            assertEquals(i, ring.readLength());
+            assertEquals(10 + i, ring.readEpoch());
+            ring.release();
+        }
+        assertNull(ring.readSlot());
+    }
+
+    @Test
+    void producerAndConsumerThreadsHandOverEverySlot() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8, 4);
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                byte[] slot;
+                while ((slot = ring.writeSlot()) == null) ring.awaitSpace();
+                slot[0] = (byte) (i >> 24);
+                slot[1] = (byte) (i >> 16);
+                slot[2] = (byte) (i >> 8);
+                slot[3] = (byte) i;
+                ring.commit(4, i);
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < count; i++) {
+            byte[] slot;
+            while ((slot = ring.readSlot()) == null) ring.awaitData();
+            int value = (slot[0] & 0xff) << 24 | (slot[1] & 0xff) << 16 | (slot[2] & 0xff) << 8 | (slot[3] & 0xff);
+            assertEquals(i, value);
+            assertEquals(i, ring.readEpoch());
+            ring.release();
+        }
+        producer.join(10_000);
+        assertNull(ring.readSlot());
+        assertSame(Thread.State.TERMINATED, producer.getState());
+    }
+}
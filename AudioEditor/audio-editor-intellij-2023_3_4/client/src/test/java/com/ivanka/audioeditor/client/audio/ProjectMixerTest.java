@@ -0,0 +1,123 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.AudioProject;
+import com.ivanka.audioeditor.client.model.composite.AudioSegment;
+import com.ivanka.audioeditor.client.model.composite.AudioTrack;
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Block-by-block mixdown of a small project against a mix summed frame by frame in the same order.
+// The material stays under the limiter ceiling, so the output is the reference delayed by its latency.
+class ProjectMixerTest {
+
+    static final int LENGTH = 30000;
+
+    private final float[][] a1 = tone(10000, 220, 0.3f);
+    private final float[][] a2 = tone(12000, 330, 0.2f);
+    private final float[][] b = tone(LENGTH - 5000, 440, 0.4f);
+    private final float[][] c = tone(LENGTH, 550, 0.9f);
+
+    static float[][] tone(int frames, double hz, float amplitude) {
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = (float) (amplitude * Math.sin(2 * Math.PI * hz * i / 44100));
+            s[1][i] = (float) (amplitude * Math.cos(2 * Math.PI * hz * i / 44100));
+        }
+        return s;
+    }
+
+    static AudioSegment clip(float[][] samples, long start) {
+        AudioSegment s = new AudioSegment("clip", samples, PcmUtils.getStandardFormat());
+        s.setStartFrame(start);
+        return s;
+    }
+
+    // Track a has two clips that overlap and leave a gap before the end; b plays at half volume; c is muted
+    AudioProject project() {
+        AudioProject project = new AudioProject("mix");
+        AudioTrack ta = new AudioTrack("a");
+        ta.add(clip(a1, 0));
+        ta.add(clip(a2, 8000));
+        AudioTrack tb = new AudioTrack("b");
+        tb.add(clip(b, 5000));
+        tb.getControls().setVolume(0.5);
+        AudioTrack tc = new AudioTrack("c");
+        tc.add(clip(c, 0));
+        tc.getControls().setMuted(true);
+        project.add(ta);
+        project.add(tb);
+        project.add(tc);
+        return project;
+    }
+
+    static float[][] render(FrameSource source, int block) {
+        float[][] out = new float[2][(int) source.getFrameLength() + 4096];
+        float[][] buf = new float[2][block];
+        int pos = 0;
+        int n;
+        while ((n = source.read(pos, buf, 0, block)) > 0) {
+            System.arraycopy(buf[0], 0, out[0], pos, n);
+            System.arraycopy(buf[1], 0, out[1], pos, n);
+            pos += n;
+        }
+        return new float[][]{Arrays.copyOf(out[0], pos), Arrays.copyOf(out[1], pos)};
+    }
+
+    @Test
+    void blocksMatchTheReferenceMixDelayedByTheLimiter() {
+        ProjectMixer mixer = new ProjectMixer(project());
+        assertEquals(LENGTH, mixer.getFrameLength());
+
+        float[][] ref = new float[2][LENGTH];
+        for (int ch = 0; ch < 2; ch++) {
+            for (int i = 0; i < LENGTH; i++) {
+                float a = 0f;
+                if (i < 10000) a += a1[ch][i];
+                if (i >= 8000 && i < 20000) a += a2[ch][i - 8000];
+                float mix = 0f + a * 1f;
+                if (i >= 5000) mix += b[ch][i - 5000] * 0.5f;
+                ref[ch][i] = mix;
+            }
+        }
+
+        int latency = LookaheadLimiter.forOutput(44100).getLatency();
+        float[][] out = render(mixer, ProjectMixer.BLOCK_FRAMES);
+        assertEquals(LENGTH + latency, out[0].length);
+        for (int ch = 0; ch < 2; ch++) {
+            for (int i = 0; i < out[ch].length; i++) {
+                assertEquals(i < latency ? 0f : ref[ch][i - latency], out[ch][i], "channel " + ch + " frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void smallAndOffsetReadsGiveTheSameStream() {
+        float[][] whole = render(new ProjectMixer(project()), ProjectMixer.BLOCK_FRAMES);
+        float[][] small = render(new ProjectMixer(project()), 1000);
+        assertArrayEquals(whole[0], small[0]);
+        assertArrayEquals(whole[1], small[1]);
+
+        ProjectMixer mixer = new ProjectMixer(project());
+        float[][] dst = new float[2][700];
+        assertEquals(600, mixer.read(0, dst, 100, 600));
+        for (int i = 0; i < 600; i++) assertEquals(whole[0][i], dst[0][100 + i]);
+    }
+
+    @Test
+    void soloLeavesOnlyTheSoloedTrack() {
+        AudioProject project = project();
+        ((AudioTrack) project.getChildren().get(1)).getControls().setSolo(true);
+
+        float[][] out = render(new ProjectMixer(project), ProjectMixer.BLOCK_FRAMES);
+        int latency = LookaheadLimiter.forOutput(44100).getLatency();
+        for (int i = 0; i < LENGTH; i++) {
+            float expected = i < 5000 ? 0f : 0f + b[1][i - 5000] * 0.5f;
+            assertEquals(expected, out[1][i + latency], "frame " + i);
+        }
+    }
+}
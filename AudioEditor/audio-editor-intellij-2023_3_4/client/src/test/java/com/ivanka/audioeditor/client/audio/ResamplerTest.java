@@ -0,0 +1,75 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Length (rounded up), accuracy against an ideal sine at the target rate, and independence from how reads are split
+class ResamplerTest {
+
+    static HeapSampleStore sine(double hz, float rate, int frames) {
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = (float) (0.5 * Math.sin(2 * Math.PI * hz * i / rate));
+            s[1][i] = -s[0][i];
+        }
+        return new HeapSampleStore(s);
+    }
+
+    @Test
+    void outputLengthScalesWithTheRatio() {
+        assertEquals(48000, Resampler.of(44100, 48000).outputLength(44100));
+        assertEquals(22050, Resampler.of(48000, 24000).outputLength(44100));
+        assertEquals(2, Resampler.of(44100, 48000).outputLength(1));
+        assertEquals(0, Resampler.of(44100, 48000).outputLength(0));
+        assertSame(Resampler.of(44100, 48000), Resampler.of(44100, 48000));
+    }
+
+    @Test
+    void rejectsNonPositiveRates() {
+        assertThrows(IllegalArgumentException.class, () -> Resampler.of(0, 48000));
+    }
+
+    @Test
+    void sineMatchesTheIdealCurveAtTheNewRate() {
+        for (float[] rates : new float[][]{{44100, 48000}, {48000, 44100}, {22050, 48000}}) {
+            Resampler r = Resampler.of(rates[0], rates[1]);
+            HeapSampleStore src = sine(1000, rates[0], (int) rates[0]);
+            int frames = (int) r.outputLength(src.getFrameLength());
+            float[][] out = new float[2][frames];
+            assertEquals(frames, r.read(src, 0, out, 0, frames));
+
+            double worst = 0;
+            // away from the edges, where the filter runs into the zero padding
+            for (int i = 1000; i < frames - 1000; i++) {
+                double ideal = 0.5 * Math.sin(2 * Math.PI * 1000 * i / rates[1]);
+                worst = Math.max(worst, Math.abs(out[0][i] - ideal));
+                assertEquals(-out[0][i], out[1][i]);
+            }
+            assertEquals(0, worst, 2e-3, rates[0] + " -> " + rates[1]);
+        }
+    }
+
+    @Test
+    void splitReadsEqualOneRead() {
+        Resampler r = Resampler.of(44100, 48000);
+        HeapSampleStore src = sine(440, 44100, 20000);
+        int frames = (int) r.outputLength(src.getFrameLength());
+
+        float[][] whole = new float[2][frames];
+        r.read(src, 0, whole, 0, frames);
+
+        float[][] pieces = new float[2][frames];
+        float[][] scratch = new float[2][BufferPool.BLOCK_FRAMES];
+        for (int pos = 0; pos < frames; pos += 333) {
+            r.read(src, pos, pieces, pos, Math.min(333, frames - pos), scratch);
+        }
+        assertArrayEquals(whole[0], pieces[0]);
+        assertArrayEquals(whole[1], pieces[1]);
+        assertEquals(0, r.read(src, frames, pieces, 0, 10));
+    }
+}
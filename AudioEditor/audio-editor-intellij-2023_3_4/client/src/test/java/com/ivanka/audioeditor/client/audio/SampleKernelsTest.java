@@ -0,0 +1,137 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The SIMD reductions against the scalar ones, and the select-based 16-bit conversion against the
+// Math.max/Math.min clamp it replaced, bit for bit on random data with NaN, infinities and both zeros
+class SampleKernelsTest {
+
+    private static final float[] SPECIAL = {
+            Float.NaN, 0f, -0f, 1f, -1f, 1.0000001f, -1.0000001f, 2f, -2f,
+            Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MIN_VALUE, 0.99999994f
+    };
+
+    private final SampleKernels scalar = new SampleKernels.Scalar();
+    private final SampleKernels vector = new VectorKernels();
+
+    // Uniform noise in [-1.5, 1.5) with roughly one sample in `specialEvery` taken from SPECIAL
+    static float[] samples(int n, long seed, int specialEvery) {
+        Random rnd = new Random(seed);
+        float[] a = new float[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = specialEvery > 0 && rnd.nextInt(specialEvery) == 0
+                    ? SPECIAL[rnd.nextInt(SPECIAL.length)]
+                    : rnd.nextFloat() * 3 - 1.5f;
+        }
+        return a;
+    }
+
+    @Test
+    void peakMatchesScalar() {
+        for (int n : new int[]{0, 1, 3, 7, 8, 15, 16, 17, 63, 64, 65, 1000, 4096}) {
+            for (int special : new int[]{0, 50, 3}) {
+                float[] a = samples(n, n * 31L + special, special);
+                for (float start : new float[]{0f, -0f, 0.5f, Float.NaN}) {
+                    assertEquals(scalar.peak(a, n, start), vector.peak(a, n, start),
+                            "n=" + n + " special=" + special + " start=" + start);
+                }
+            }
+        }
+    }
+
+    @Test
+    void peakOfZerosKeepsTheSignOfZero() {
+        float[] zeros = new float[64];
+        for (int i = 0; i < zeros.length; i += 2) zeros[i] = -0f;
+        assertEquals(scalar.peak(zeros, 64, -0f), vector.peak(zeros, 64, -0f));
+        assertEquals(0f, vector.peak(zeros, 64, -0f));
+    }
+
+    @Test
+    void minMaxMatchesScalarOverAnyRange() {
+        float[] a = samples(5000, 7, 40);
+        for (int from : new int[]{0, 1, 5, 17, 255}) {
+            for (int len : new int[]{0, 1, 4, 9, 31, 256, 1024, 4700}) {
+                for (float[] start : new float[][]{{1f, -1f}, {0f, -0f}, {-0f, 0f}, {Float.NaN, Float.NaN}}) {
+                    float[] s = start.clone();
+                    float[] v = start.clone();
+                    scalar.minMax(a, from, from + len, s);
+                    vector.minMax(a, from, from + len, v);
+                    assertEquals(s[0], v[0], "min from=" + from + " len=" + len);
+                    assertEquals(s[1], v[1], "max from=" + from + " len=" + len);
+                }
+            }
+        }
+    }
+
+    @Test
+    void minMaxOfSignedZerosMatchesScalar() {
+        float[] a = {0f, -0f, 0f, -0f, -0f, 0f, 0f, -0f, 0f, -0f, -0f, -0f, 0f, 0f, 0f, -0f, 0f};
+        float[] s = {1f, -1f};
+        float[] v = {1f, -1f};
+        scalar.minMax(a, 0, a.length, s);
+        vector.minMax(a, 0, a.length, v);
+        assertArrayEquals(s, v);
+        assertEquals(-0f, v[0]);
+        assertEquals(0f, v[1]);
+    }
+
+    @Test
+    void elementWiseKernelsMatchScalar() {
+        float[] src = samples(1031, 3, 20);
+        float[] s = samples(1031, 4, 20);
+        float[] v = s.clone();
+        scalar.mulAdd(s, src, 0.7f, 1031);
+        vector.mulAdd(v, src, 0.7f, 1031);
+        assertArrayEquals(s, v);
+        scalar.scale(s, -1.3f, 1000);
+        vector.scale(v, -1.3f, 1000);
+        assertArrayEquals(s, v);
+    }
+
+    // The conversion toPCM16 used before the kernels were introduced
+    private static short oldPcm16(float v) {
+        return (short) (Math.max(-1f, Math.min(1f, v)) * Short.MAX_VALUE);
+    }
+
+    @Test
+    void toPcm16MatchesTheOldClampByteForByte() {
+        int n = 20000;
+        float[][] pcm = {samples(n, 5, 5), samples(n, 6, 5)};
+        for (int i = 0; i < SPECIAL.length; i++) {
+            pcm[0][i] = SPECIAL[i];
+            pcm[1][SPECIAL.length - 1 - i] = SPECIAL[i];
+        }
+
+        int offset = 3, frames = n - 10;
+        byte[] expected = new byte[frames * 4];
+        for (int i = 0, b = 0; i < frames; i++) {
+            short l = oldPcm16(pcm[0][offset + i]);
+            short r = oldPcm16(pcm[1][offset + i]);
+            expected[b++] = (byte) l;
+            expected[b++] = (byte) (l >> 8);
+            expected[b++] = (byte) r;
+            expected[b++] = (byte) (r >> 8);
+        }
+
+        byte[] out = new byte[frames * 4];
+        assertEquals(frames * 4, PcmUtils.toPCM16(pcm, offset, frames, out));
+        assertArrayEquals(expected, out);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(frames * 4 + 2).order(ByteOrder.LITTLE_ENDIAN);
+        direct.position(2);
+        assertEquals(frames * 4, PcmUtils.toPCM16(pcm, offset, frames, direct));
+        byte[] fromBuffer = new byte[frames * 4];
+        direct.position(2);
+        direct.get(fromBuffer);
+        assertArrayEquals(expected, fromBuffer);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ivanka.audioeditor.client.audio;
+
+import com.ivanka.audioeditor.client.model.store.HeapSampleStore;
+import com.ivanka.audioeditor.client.model.store.StretchedStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Output length, blocks rendered in any order joining seamlessly into the front-to-back render, and a
+// stretched tone keeping its pitch and level
+class TimeStretchTest {
+
+    static HeapSampleStore sine(double hz, int frames) {
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = (float) (0.5 * Math.sin(2 * Math.PI * hz * i / 44100));
+            s[1][i] = (float) (0.25 * Math.sin(2 * Math.PI * hz * 1.5 * i / 44100));
+        }
+        return new HeapSampleStore(s);
+    }
+
+    static float[][] renderInOrder(TimeStretch stretch, List<Long> order) {
+        float[][] out = new float[2][(int) stretch.getFrameLength()];
+        for (long b : order) {
+            float[][] block = stretch.renderBlock(b);
+            int at = (int) (b * stretch.getBlockFrames());
+            System.arraycopy(block[0], 0, out[0], at, block[0].length);
+            System.arraycopy(block[1], 0, out[1], at, block[1].length);
+        }
+        return out;
+    }
+
+    @Test
+    void outputLengthFollowsTheTempo() {
+        assertEquals(29400, TimeStretch.outputLength(44100, 1.5));
+        assertEquals(88200, TimeStretch.outputLength(44100, 0.5));
+        assertEquals(44100, TimeStretch.outputLength(44100, 1.0));
+
+        TimeStretch stretch = new TimeStretch(sine(440, 100000), 0.8, 44100);
+        assertEquals(125000, stretch.getFrameLength());
+        long total = 0;
+        for (long b = 0; b < stretch.getBlockCount(); b++) total += stretch.renderBlock(b)[0].length;
+        assertEquals(stretch.getFrameLength(), total);
+        assertThrows(IllegalArgumentException.class, () -> new TimeStretch(sine(440, 100), 0, 44100));
+    }
+
+    @Test
+    void blocksRenderedInAnyOrderJoinIntoTheSequentialRender() {
+        for (double tempo : new double[]{0.7, 1.3, 2.0}) {
+            HeapSampleStore src = sine(330, 150000);
+            TimeStretch sequential = new TimeStretch(src, tempo, 44100);
+            List<Long> order = blocks(sequential);
+            float[][] expected = renderInOrder(sequential, order);
+
+            Collections.shuffle(order, new Random(21));
+            float[][] shuffled = renderInOrder(new TimeStretch(src, tempo, 44100), order);
+            assertArrayEquals(expected[0], shuffled[0], "tempo " + tempo);
+            assertArrayEquals(expected[1], shuffled[1], "tempo " + tempo);
+
+            // no step at a join is larger than the tone itself can make between two samples
+            double maxStep = 2 * Math.PI * 330 / 44100 * 0.5 * 1.25;
+            int blockFrames = sequential.getBlockFrames();
+            for (int at = blockFrames; at < expected[0].length; at += blockFrames) {
+                double step = Math.abs(expected[0][at] - expected[0][at - 1]);
+                assertTrue(step <= maxStep, "tempo " + tempo + " join at " + at + ": " + step);
+            }
+
+            // the store's reads straddle block edges and start mid-block
+            StretchedStore store = new StretchedStore(src, tempo, 44100);
+            float[][] read = new float[2][expected[0].length];
+            for (int pos = 0; pos < read[0].length; pos += 777) {
+                store.read(pos, read, pos, Math.min(777, read[0].length - pos));
+            }
+            assertArrayEquals(expected[0], read[0], "store at tempo " + tempo);
+        }
+    }
+
+    @Test
+    void stretchedToneKeepsItsPitchAndLevel() {
+        for (double tempo : new double[]{0.75, 1.5}) {
+            TimeStretch stretch = new TimeStretch(sine(440, 88200), tempo, 44100);
+            float[] left = renderInOrder(stretch, blocks(stretch))[0];
+
+            // rising zero crossings and RMS away from the edges
+            int from = 4410, to = left.length - 4410;
+            int crossings = 0;
+            double sq = 0;
+            for (int i = from; i < to; i++) {
+                if (left[i - 1] < 0 && left[i] >= 0) crossings++;
+                sq += left[i] * left[i];
+            }
+            double hz = crossings * 44100.0 / (to - from);
+            assertEquals(440, hz, 440 * 0.02, "tempo " + tempo);
+            assertEquals(0.5 / Math.sqrt(2), Math.sqrt(sq / (to - from)), 0.05, "tempo " + tempo);
+        }
+    }
+
+    private static List<Long> blocks(TimeStretch stretch) {
+        List<Long> order = new ArrayList<>();
+        for (long b = 0; b < stretch.getBlockCount(); b++) order.add(b);
+        return order;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ivanka.audioeditor.client.model.composite;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Project-wide undo order across segments, redo invalidation, and entries left stale by a replaced store
+class EditHistoryTest {
+
+    private final AudioProject project = new AudioProject("test");
+    private final AudioTrack track = new AudioTrack("track");
+
+    EditHistoryTest() {
+        project.add(track);
+    }
+
+    private AudioSegment segment(int frames) {
+        AudioSegment s = new AudioSegment("clip", new float[2][frames], PcmUtils.getStandardFormat());
+        track.add(s);
+        return s;
+    }
+
+    @Test
+    void undoAndRedoFollowTheOrderEditsWereMade() {
+        EditHistory history = project.getHistory();
+        AudioSegment a = segment(100);
+        AudioSegment b = segment(100);
+        a.cut(0, 10);
+        history.record(a);
+        b.cut(0, 20);
+        history.record(b);
+        a.cut(0, 30);
+        history.record(a);
+
+        assertSame(a, history.undo());
+        assertEquals(90, a.getFrameLength());
+        assertSame(b, history.undo());
+        assertEquals(100, b.getFrameLength());
+        assertSame(a, history.undo());
+        assertEquals(100, a.getFrameLength());
+        assertNull(history.undo());
+        assertFalse(history.canUndo());
+
+        assertSame(a, history.redo());
+        assertSame(b, history.redo());
+        assertEquals(90, a.getFrameLength());
+        assertEquals(80, b.getFrameLength());
+        assertTrue(history.canRedo());
+    }
+
+    @Test
+    void aNewEditDropsEveryRedo() {
+        EditHistory history = project.getHistory();
+        AudioSegment a = segment(100);
+        AudioSegment b = segment(100);
+        a.cut(0, 10);
+        history.record(a);
+        b.reverse(0, 50);
+        history.record(b);
+        history.undo();
+        history.undo();
+
+        b.gain(0, 100, 0.5f);
+        history.record(b);
+        assertFalse(history.canRedo());
+        assertFalse(a.getEdits().canRedo());
+        assertNull(history.redo());
+    }
+
+    @Test
+    void entriesForAReplacedStoreAreSkipped() {
+        EditHistory history = project.getHistory();
+        AudioSegment a = segment(100);
+        AudioSegment b = segment(100);
+        b.cut(0, 10);
+        history.record(b);
+        a.cut(0, 10);
+        history.record(a);
+
+        a.setSamples(new float[2][50]);
+        assertTrue(history.canUndo());
+        assertSame(b, history.undo());
+        assertFalse(history.canUndo());
+        assertEquals(50, a.getFrameLength());
+    }
+}
@@ -0,0 +1,111 @@
+package com.ivanka.audioeditor.client.model.composite;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Overlap queries against a linear scan over the same entries in start order, with touching edges,
+// empty queries and an index array too small for the result
+class IntervalIndexTest {
+
+    static List<long[]> randomIntervals(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<long[]> items = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            long start = rnd.nextInt(10000);
+            long len = rnd.nextInt(8) == 0 ? rnd.nextInt(3000) : rnd.nextInt(200);
+            items.add(new long[]{start, start + len});
+        }
+        return items;
+    }
+
+    static IntervalIndex<long[]> index(List<long[]> items) {
+        return new IntervalIndex<>(items, iv -> iv[0], iv -> iv[1]);
+    }
+
+    static List<long[]> bruteForce(List<long[]> items, long from, long to) {
+        List<long[]> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong(iv -> iv[0]));
+        List<long[]> out = new ArrayList<>();
+        if (from >= to) return out;
+        for (long[] iv : sorted) {
+            if (iv[0] < to && iv[1] > from) out.add(iv);
+        }
+        return out;
+    }
+
+    private static void assertSameEntries(List<long[]> expected, List<long[]> actual, String what) {
+        assertEquals(expected.size(), actual.size(), what);
+        for (int i = 0; i < expected.size(); i++) assertSame(expected.get(i), actual.get(i), what + " #" + i);
+    }
+
+    @Test
+    void randomQueriesMatchALinearScan() {
+        for (int n : new int[]{0, 1, 2, 7, 100, 1000}) {
+            List<long[]> items = randomIntervals(n, n);
+            IntervalIndex<long[]> index = index(items);
+            assertEquals(n, index.size());
+
+            Random rnd = new Random(n + 1);
+            for (int q = 0; q < 500; q++) {
+                long from = rnd.nextInt(12000) - 1000;
+                long to = from + (rnd.nextInt(5) == 0 ? 0 : rnd.nextInt(2000));
+                List<long[]> expected = bruteForce(items, from, to);
+                String what = "n=" + n + " [" + from + ", " + to + ")";
+                assertSameEntries(expected, index.overlapping(from, to), what);
+
+                int[] idx = new int[n];
+                assertEquals(expected.size(), index.overlapping(from, to, idx), what);
+                for (int i = 0; i < expected.size(); i++) assertSame(expected.get(i), index.get(idx[i]), what);
+            }
+        }
+    }
+
+    @Test
+    void edgesAreHalfOpen() {
+        long[] a = {100, 200};
+        long[] b = {200, 300};
+        IntervalIndex<long[]> index = index(List.of(b, a));
+        assertSameEntries(List.of(a), index.overlapping(0, 101), "before b");
+        assertSameEntries(List.of(a), index.overlapping(199, 200), "last frame of a");
+        assertSameEntries(List.of(b), index.overlapping(200, 201), "first frame of b");
+        assertSameEntries(List.of(a, b), index.overlapping(150, 250), "both");
+        assertTrue(index.overlapping(300, 400).isEmpty());
+        assertTrue(index.overlapping(0, 100).isEmpty());
+        assertTrue(index.overlapping(150, 150).isEmpty());
+        assertEquals(300, index.getEnd());
+        assertEquals(Long.MIN_VALUE, index(List.of()).getEnd());
+    }
+
+    @Test
+    void smallIndexArrayStillCountsEveryMatch() {
+        List<long[]> items = randomIntervals(300, 5);
+        IntervalIndex<long[]> index = index(items);
+        List<long[]> expected = bruteForce(items, 2000, 6000);
+        assertTrue(expected.size() > 4);
+
+        int[] idx = {-1, -1, -1, -1};
+        assertEquals(expected.size(), index.overlapping(2000, 6000, idx));
+        for (int i = 0; i < idx.length; i++) assertSame(expected.get(i), index.get(idx[i]));
+        assertEquals(expected.size(), index.overlapping(2000, 6000, new int[0]));
+    }
+
+    @Test
+    void longestEntryIsFoundBehindShortOnes() {
+        List<long[]> items = new ArrayList<>();
+        long[] longest = {0, 1_000_000};
+        items.add(longest);
+        for (int i = 1; i < 200; i++) items.add(new long[]{i * 10L, i * 10L + 5});
+        IntervalIndex<long[]> index = index(items);
+        assertSameEntries(List.of(longest), index.overlapping(500_000, 500_001), "middle of the longest");
+        assertSameEntries(bruteForce(items, 995, 1003), index.overlapping(995, 1003), "mixed");
+        assertEquals(1_000_000, index.getEnd());
+    }
+}
@@ -0,0 +1,99 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ivanka.audioeditor.client.model.store.PieceTableTest.left;
+import static com.ivanka.audioeditor.client.model.store.PieceTableTest.ramp;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Undo, redo and folding against the table the same edits give when applied directly, including
+// histories long enough to replay from a checkpoint
+class EditListTest {
+
+    @Test
+    void undoAndRedoRestoreEachStep() {
+        PieceTable base = PieceTable.of(ramp(10));
+        EditList list = new EditList(base);
+        list.add(new EditList.Cut(0, 2));
+        list.add(new EditList.Reverse(0, 3));
+        assertArrayEquals(new float[]{4, 3, 2, 5, 6, 7, 8, 9}, left(list.resolve()));
+
+        assertTrue(list.undo());
+        assertArrayEquals(new float[]{2, 3, 4, 5, 6, 7, 8, 9}, left(list.resolve()));
+        assertTrue(list.undo());
+        assertSame(base, list.resolve());
+        assertFalse(list.undo());
+
+        assertTrue(list.redo());
+        assertTrue(list.redo());
+        assertFalse(list.redo());
+        assertArrayEquals(new float[]{4, 3, 2, 5, 6, 7, 8, 9}, left(list.resolve()));
+    }
+
+    @Test
+    void addingAnEditDropsTheRedoStack() {
+        EditList list = new EditList(PieceTable.of(ramp(10)));
+        list.add(new EditList.Cut(0, 1));
+        list.undo();
+        assertTrue(list.canRedo());
+        list.add(new EditList.Gain(0, 10, 2f));
+        assertFalse(list.canRedo());
+        assertEquals(1, list.getEdits().size());
+    }
+
+    @Test
+    void undoPastCheckpointsMatchesDirectReplay() {
+        PieceTable base = PieceTable.of(ramp(100));
+        EditList list = new EditList(base);
+        List<EditList.Edit> edits = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            EditList.Edit e = i % 3 == 0 ? new EditList.Reverse(i, i + 20)
+                    : i % 3 == 1 ? new EditList.Gain(i, i + 5, 1.5f)
+                    : new EditList.Insert(PieceTable.of(ramp(3)), i, i);
+            edits.add(e);
+            list.add(e);
+            list.resolve();
+        }
+        for (int undone = 1; undone <= 40; undone++) {
+            list.undo();
+            PieceTable expected = base;
+            for (EditList.Edit e : edits.subList(0, 40 - undone)) expected = e.apply(expected);
+            assertArrayEquals(left(expected), left(list.resolve()), "after " + undone + " undos");
+        }
+    }
+
+    @Test
+    void dropOldestFoldsTheEditIntoTheBase() {
+        EditList list = new EditList(PieceTable.of(ramp(10)));
+        list.add(new EditList.Cut(0, 5));
+        list.add(new EditList.Gain(0, 5, 2f));
+        list.dropOldest();
+
+        assertEquals(5, list.getBase().getFrameLength());
+        assertEquals(1, list.getEdits().size());
+        assertArrayEquals(new float[]{10, 12, 14, 16, 18}, left(list.resolve()));
+        list.undo();
+        assertFalse(list.canUndo());
+        assertArrayEquals(new float[]{5, 6, 7, 8, 9}, left(list.resolve()));
+    }
+
+    @Test
+    void collectStoresFindsLeavesOfClipsAndRedo() {
+        HeapSampleStore src = ramp(10);
+        HeapSampleStore clip = ramp(4);
+        EditList list = new EditList(PieceTable.of(src));
+        list.add(new EditList.Insert(PieceTable.of(clip), 2, 2));
+        list.undo();
+        List<SampleStore> stores = new ArrayList<>();
+        list.collectStores(stores);
+        assertTrue(stores.contains(src));
+        assertTrue(stores.contains(clip));
+    }
+}
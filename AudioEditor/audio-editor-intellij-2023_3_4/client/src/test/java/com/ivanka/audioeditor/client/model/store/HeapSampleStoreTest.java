@@ -0,0 +1,117 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.model.composite.PcmUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Chunked writes across the CHUNK_FRAMES boundary, the 16-bit and mono layouts, spilling in the same
+// layout, and a long import landing in heap chunks
+class HeapSampleStoreTest {
+
+    @Test
+    void writerSpanningChunksReadsBackExactly() {
+        int frames = HeapSampleStore.CHUNK_FRAMES + 12345;
+        float[][] src = MappedSampleStoreTest.noise(frames, 1);
+        HeapSampleStore.Writer w = HeapSampleStore.writer();
+        for (int pos = 0; pos < frames; pos += 7000) w.write(src, pos, Math.min(7000, frames - pos));
+        assertEquals(frames, w.getFrameLength());
+
+        HeapSampleStore store = w.finish();
+        assertEquals(frames, store.getFrameLength());
+        assertEquals(frames * 8L, store.getHeapBytes());
+
+        float[][] dst = new float[2][100];
+        long across = HeapSampleStore.CHUNK_FRAMES - 50;
+        assertEquals(100, store.read(across, dst, 0, 100));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(src[0][(int) across + i], dst[0][i]);
+            assertEquals(src[1][(int) across + i], dst[1][i]);
+        }
+        assertArrayEquals(src[1], store.toArray()[1]);
+        assertEquals(0, store.read(frames, dst, 0, 100));
+    }
+
+    @Test
+    void pcm16MonoIsExactForSixteenBitInputAndFillsBothChannels() {
+        float[][] src = {{0f, 0.5f, -1f, 12345 / 32768f}};
+        HeapSampleStore.Writer w = HeapSampleStore.writer(1, true);
+        w.write(src, 0, 4);
+        HeapSampleStore store = w.finish();
+        assertEquals(4 * 2L, store.getHeapBytes());
+
+        float[][] out = store.toArray();
+        assertArrayEquals(src[0], out[0]);
+        assertArrayEquals(src[0], out[1]);
+    }
+
+    @Test
+    void pcm16ClampsInsteadOfWrapping() {
+        HeapSampleStore.Writer w = HeapSampleStore.writer(2, true);
+        w.write(new float[][]{{1.5f}, {-1.5f}}, 0, 1);
+        float[][] out = w.finish().toArray();
+        assertEquals(32767 / 32768f, out[0][0]);
+        assertEquals(-1f, out[1][0]);
+    }
+
+    @Test
+    void rejectsUnsupportedChannelCounts() {
+        assertThrows(IllegalArgumentException.class, () -> HeapSampleStore.writer(3, false));
+    }
+
+    @Test
+    void spilledStoreReadsTheSameSamplesAndFreesTheHeap() throws IOException {
+        float[][] src = MappedSampleStoreTest.noise(5000, 2);
+        HeapSampleStore store = new HeapSampleStore(src);
+        store.spill();
+        assertEquals(0, store.getHeapBytes());
+        assertEquals(5000, store.getFrameLength());
+
+        float[][] dst = new float[2][300];
+        assertEquals(300, store.read(4700, dst, 0, 300));
+        for (int i = 0; i < 300; i++) assertEquals(src[0][4700 + i], dst[0][i]);
+        assertArrayEquals(src[1], store.toArray()[1]);
+    }
+
+    @Test
+    void spillKeepsTheSixteenBitMonoLayout() throws IOException {
+        float[][] src = MappedSampleStoreTest.noise(5000, 4);
+        HeapSampleStore.Writer w = HeapSampleStore.writer(1, true);
+        w.write(src, 0, 5000);
+        HeapSampleStore store = w.finish();
+        float[][] before = store.toArray();
+
+        store.spill();
+        assertEquals(0, store.getHeapBytes());
+        float[][] after = store.toArray();
+        assertArrayEquals(before[0], after[0]);
+        assertArrayEquals(before[0], after[1]);
+    }
+
+    // Longer than one chunk, so it would have gone to a mapped file before the heap budget
+    @Test
+    void longImportWithinTheHeapBudgetIsChunkedOnTheHeap() throws Exception {
+        int frames = HeapSampleStore.CHUNK_FRAMES + 5000;
+        float[][] src = MappedSampleStoreTest.noise(frames, 3);
+        File wav = File.createTempFile("import-", ".wav");
+        try {
+            PcmUtils.writeWav(new HeapSampleStore(src), PcmUtils.getStandardFormat(), wav);
+            SampleStore store = PcmUtils.readWavToStore(wav, null);
+            assertTrue(store instanceof HeapSampleStore, store.getClass().getSimpleName());
+            assertEquals(frames, store.getFrameLength());
+
+            float[][] dst = new float[2][100];
+            long across = HeapSampleStore.CHUNK_FRAMES - 50;
+            assertEquals(100, store.read(across, dst, 0, 100));
+            for (int i = 0; i < 100; i++) assertEquals(src[1][(int) across + i], dst[1][i], 1f / 16384);
+        } finally {
+            wav.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Round trips through the scratch file, written whole, block by block and copied from another store,
+// in every layout the heap store also keeps
+class MappedSampleStoreTest {
+
+    static float[][] noise(int frames, long seed) {
+        Random rnd = new Random(seed);
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = rnd.nextFloat() * 2 - 1;
+            s[1][i] = rnd.nextFloat() * 2 - 1;
+        }
+        return s;
+    }
+
+    @Test
+    void ofReadsBackExactly() throws IOException {
+        float[][] src = noise(10000, 3);
+        MappedSampleStore store = MappedSampleStore.of(src);
+        assertEquals(10000, store.getFrameLength());
+        float[][] out = store.toArray();
+        assertArrayEquals(src[0], out[0]);
+        assertArrayEquals(src[1], out[1]);
+    }
+
+    @Test
+    void writerAppendsBlocksInOrder() throws IOException {
+        float[][] src = noise(3000, 4);
+        MappedSampleStore store;
+        try (MappedSampleStore.Writer w = MappedSampleStore.create()) {
+            w.write(src, 0, 1000);
+            w.write(src, 1000, 2000);
+            assertEquals(3000, w.getFrameLength());
+            store = w.finish();
+        }
+        float[][] dst = new float[2][10];
+        assertEquals(10, store.read(995, dst, 0, 10));
+        for (int i = 0; i < 10; i++) assertEquals(src[1][995 + i], dst[1][i]);
+        assertEquals(5, store.read(2995, dst, 0, 10));
+        assertEquals(0, store.read(3000, dst, 0, 10));
+    }
+
+    @Test
+    void copyOfAnEditedTableKeepsItsSamples() throws IOException {
+        PieceTable t = PieceTable.of(new HeapSampleStore(noise(4000, 5))).reverse(100, 3000).gain(0, 500, 0.5f);
+        MappedSampleStore copy = MappedSampleStore.copyOf(t);
+        float[][] expected = t.toArray();
+        float[][] out = copy.toArray();
+        assertArrayEquals(expected[0], out[0]);
+        assertArrayEquals(expected[1], out[1]);
+    }
+
+    @Test
+    void pcm16MonoMatchesTheHeapStoreInTheSameLayout() throws IOException {
+        float[][] src = {{0f, 0.5f, -1f, 12345 / 32768f, 1.5f, -1.5f, 0.3f}};
+        HeapSampleStore.Writer heap = HeapSampleStore.writer(1, true);
+        heap.write(src, 0, 7);
+        float[][] expected = heap.finish().toArray();
+
+        MappedSampleStore store;
+        try (MappedSampleStore.Writer w = MappedSampleStore.create(1, true)) {
+            w.write(src, 0, 7);
+            store = w.finish();
+        }
+        float[][] out = store.toArray();
+        assertArrayEquals(expected[0], out[0]);
+        assertArrayEquals(expected[0], out[1]);
+        assertEquals(32767 / 32768f, out[0][4]);
+    }
+
+    @Test
+    void copyOfKeepsTheRequestedLayout() throws IOException {
+        float[][] src = noise(3000, 6);
+        HeapSampleStore.Writer w = HeapSampleStore.writer(2, true);
+        w.write(src, 0, 3000);
+        HeapSampleStore pcm16 = w.finish();
+        float[][] expected = pcm16.toArray();
+
+        float[][] out = MappedSampleStore.copyOf(pcm16, 2, true).toArray();
+        assertArrayEquals(expected[0], out[0]);
+        assertArrayEquals(expected[1], out[1]);
+
+        float[][] mono = MappedSampleStore.copyOf(new HeapSampleStore(src), 1, false).toArray();
+        assertArrayEquals(src[0], mono[0]);
+        assertArrayEquals(src[0], mono[1]);
+        assertThrows(IllegalArgumentException.class, () -> MappedSampleStore.create(0, false));
+    }
+}
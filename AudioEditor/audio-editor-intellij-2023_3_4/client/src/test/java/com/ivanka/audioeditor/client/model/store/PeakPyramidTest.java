@@ -0,0 +1,82 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Queries against a direct scan, one pyramid per store, and lookups that do not wait on another store's build
+class PeakPyramidTest {
+
+    // A store whose reads block until released, standing in for a long import being summarized
+    private static final class GatedStore implements SampleStore {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final HeapSampleStore inner = new HeapSampleStore(MappedSampleStoreTest.noise(10000, 11));
+
+        @Override public long getFrameLength() { return inner.getFrameLength(); }
+
+        @Override
+        public int read(long fromFrame, float[][] dst, int dstOffset, int frames) {
+            reading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return inner.read(fromFrame, dst, dstOffset, frames);
+        }
+
+        @Override public float[][] toArray() { return inner.toArray(); }
+    }
+
+    // Ranges shorter than a base block are scanned; longer ones are read from whole blocks of the level
+    // that fits, so these are aligned to those blocks, as are the edges of the gain edit
+    @Test
+    void queryMatchesADirectScan() {
+        float[][] src = MappedSampleStoreTest.noise(98304, 12);
+        PieceTable table = PieceTable.of(new HeapSampleStore(src)).gain(16384, 65536, -0.5f);
+        float[] left = table.toArray()[0];
+
+        for (long[] range : new long[][]{{0, 100}, {70000, 70200}, {768, 1280}, {16384, 32768}, {0, 98304}}) {
+            float lo = 1f, hi = -1f;
+            double sq = 0;
+            for (int i = (int) range[0]; i < range[1]; i++) {
+                lo = Math.min(lo, left[i]);
+                hi = Math.max(hi, left[i]);
+                sq += (double) left[i] * left[i];
+            }
+            float[] out = new float[3];
+            PeakPyramid.query(table, range[0], range[1], out);
+            assertArrayEquals(new float[]{lo, hi}, new float[]{out[0], out[1]}, 1e-6f);
+            assertEquals(Math.sqrt(sq / (range[1] - range[0])), out[2], 1e-4);
+        }
+    }
+
+    @Test
+    void eachStoreGetsOnePyramid() {
+        HeapSampleStore store = new HeapSampleStore(MappedSampleStoreTest.noise(5000, 13));
+        assertSame(PeakPyramid.of(store), PeakPyramid.of(store));
+    }
+
+    @Test
+    void aSlowBuildOnlyHoldsUpItsOwnStore() throws Exception {
+        GatedStore slow = new GatedStore();
+        CompletableFuture<PeakPyramid> first = CompletableFuture.supplyAsync(() -> PeakPyramid.of(slow));
+        CompletableFuture<PeakPyramid> second = CompletableFuture.supplyAsync(() -> PeakPyramid.of(slow));
+        assertTrue(slow.reading.await(10, TimeUnit.SECONDS));
+
+        HeapSampleStore other = new HeapSampleStore(MappedSampleStoreTest.noise(5000, 14));
+        PeakPyramid unrelated = CompletableFuture.supplyAsync(() -> PeakPyramid.of(other)).get(10, TimeUnit.SECONDS);
+        assertSame(unrelated, PeakPyramid.of(other));
+
+        slow.release.countDown();
+        assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,90 @@
+package com.ivanka.audioeditor.client.model.store;
+
+import com.ivanka.audioeditor.client.audio.RenderScratch;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Edits on a ten-frame ramp (left = i, right = -i), checked against the samples they should produce
+class PieceTableTest {
+
+    static HeapSampleStore ramp(int frames) {
+        float[][] s = new float[2][frames];
+        for (int i = 0; i < frames; i++) {
+            s[0][i] = i;
+            s[1][i] = -i;
+        }
+        return new HeapSampleStore(s);
+    }
+
+    static float[] left(SampleStore store) {
+        return store.toArray()[0];
+    }
+
+    @Test
+    void cutRemovesTheRange() {
+        PieceTable t = PieceTable.of(ramp(10)).cut(2, 5);
+        assertEquals(7, t.getFrameLength());
+        assertArrayEquals(new float[]{0, 1, 5, 6, 7, 8, 9}, left(t));
+    }
+
+    @Test
+    void spliceReplacesTheRangeWithTheClip() {
+        PieceTable t = PieceTable.of(ramp(10));
+        PieceTable t2 = t.splice(t.slice(7, 9), 1, 3);
+        assertArrayEquals(new float[]{0, 7, 8, 3, 4, 5, 6, 7, 8, 9}, left(t2));
+        assertArrayEquals(new float[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, left(t));
+    }
+
+    @Test
+    void reverseFlipsTheRangeAndTwiceRestoresIt() {
+        PieceTable t = PieceTable.of(ramp(10));
+        PieceTable r = t.reverse(2, 6);
+        assertArrayEquals(new float[]{0, 1, 5, 4, 3, 2, 6, 7, 8, 9}, left(r));
+        assertArrayEquals(new float[]{0, -1, -5, -4, -3, -2, -6, -7, -8, -9}, r.toArray()[1]);
+        assertArrayEquals(left(t), left(r.reverse(2, 6)));
+        assertEquals(1, r.reverse(2, 6).getPieces().size());
+    }
+
+    @Test
+    void gainScalesOnlyTheRange() {
+        PieceTable t = PieceTable.of(ramp(10)).gain(3, 5, 0.5f);
+        assertArrayEquals(new float[]{0, 1, 2, 1.5f, 2, 5, 6, 7, 8, 9}, left(t));
+        assertSame(t, t.gain(0, 10, 1f));
+    }
+
+    @Test
+    void editsOfReversedPiecesCompose() {
+        PieceTable t = PieceTable.of(ramp(10)).reverse(0, 10).cut(0, 2).gain(0, 2, 2f);
+        assertArrayEquals(new float[]{14, 12, 5, 4, 3, 2, 1, 0}, left(t));
+    }
+
+    @Test
+    void readsStartingInsideAPieceAndRealtimeReadsMatch() {
+        PieceTable t = PieceTable.of(ramp(10)).reverse(4, 8).gain(1, 3, -1f);
+        float[][] plain = new float[2][6];
+        float[][] realtime = new float[2][6];
+        assertEquals(6, t.read(3, plain, 0, 6));
+        assertEquals(6, t.readRealtime(3, realtime, 0, 6, new RenderScratch()));
+        assertArrayEquals(new float[]{3, 7, 6, 5, 4, 8}, plain[0]);
+        assertArrayEquals(plain[0], realtime[0]);
+        assertArrayEquals(plain[1], realtime[1]);
+        assertEquals(0, t.read(10, plain, 0, 6));
+    }
+
+    @Test
+    void visitSourcesReportsSourceRanges() {
+        HeapSampleStore src = ramp(10);
+        PieceTable t = PieceTable.of(src).cut(2, 5);
+        StringBuilder seen = new StringBuilder();
+        t.visitSources(1, 4, (s, from, to, gain) -> {
+            assertSame(src, s);
+            seen.append(from).append('-').append(to).append(' ');
+        });
+        assertEquals("1-2 5-7 ", seen.toString());
+        assertTrue(t.referencesHeap());
+    }
+}
@@ -0,0 +1,8 @@
+package com.ivanka.audioeditor.common.dto;
+
+public record AutomationPointDTO(
+        String lane,
+        double timeSec,
+        double value,
+        boolean exponential
+) {}
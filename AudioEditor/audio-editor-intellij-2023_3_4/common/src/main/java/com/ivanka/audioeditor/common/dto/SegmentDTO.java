@@ -1,9 +1,12 @@
 package com.ivanka.audioeditor.common.dto;
 
+import java.util.List;
+
 public record SegmentDTO(
         Long id,
         double startTime,
         double endTime,
         String wavPath,
-        String name
-) {}
\ No newline at end of file
+        String name,
+        List<AutomationPointDTO> automation
+) {}
@@ -8,5 +8,6 @@ public record TrackDTO(
         int order,
         boolean isMuted,
         double volume,
-        List<SegmentDTO> segments
-) {}
\ No newline at end of file
+        List<SegmentDTO> segments,
+        List<AutomationPointDTO> automation
+) {}
@@ -0,0 +1,34 @@
+package com.ivanka.audioeditor.server.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+// One breakpoint of a track or segment automation curve. The lane is "gain" or "pan"; time is in
+// seconds from the start of the track (or of the segment); exponential shapes the curve to the next point.
+@Embeddable
+public class AutomationPoint {
+
+    private String lane;
+    private double timeSec;
+    @Column(name = "point_value")
+    private double value;
+    private boolean exponential;
+
+    public AutomationPoint() {}
+
+    public AutomationPoint(String lane, double timeSec, double value, boolean exponential) {
+        this.lane = lane;
+        this.timeSec = timeSec;
+        this.value = value;
+        this.exponential = exponential;
+    }
+
+    public String getLane() { return lane; }
+    public void setLane(String lane) { this.lane = lane; }
+    public double getTimeSec() { return timeSec; }
+    public void setTimeSec(double timeSec) { this.timeSec = timeSec; }
+    public double getValue() { return value; }
+    public void setValue(double value) { this.value = value; }
+    public boolean isExponential() { return exponential; }
+    public void setExponential(boolean exponential) { this.exponential = exponential; }
+}
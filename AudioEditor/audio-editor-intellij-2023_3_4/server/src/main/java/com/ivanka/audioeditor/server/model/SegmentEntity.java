@@ -1,6 +1,8 @@
 package com.ivanka.audioeditor.server.model;
 
 import jakarta.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 public class SegmentEntity {
@@ -17,6 +19,11 @@ public class SegmentEntity {
     private double startTimeSec;
     private double endTimeSec;
 
+    @ElementCollection
+    @CollectionTable(name = "segment_automation", joinColumns = @JoinColumn(name = "segment_id"))
+    @OrderBy("timeSec ASC")
+    private List<AutomationPoint> automation = new ArrayList<>();
+
     public SegmentEntity() {}
 
     public SegmentEntity(TrackEntity track, AudioFileEntity file, double start, double end) {
@@ -40,4 +47,6 @@ public class SegmentEntity {
 
     public double getEndTimeSec() { return endTimeSec; }
     public void setEndTimeSec(double endTimeSec) { this.endTimeSec = endTimeSec; }
+
+    public List<AutomationPoint> getAutomation() { return automation; }
 }
\ No newline at end of file
@@ -28,6 +28,11 @@ public class TrackEntity {
     @JsonIgnoreProperties("track")
     private List<SegmentEntity> segments = new ArrayList<>();
 
+    @ElementCollection
+    @CollectionTable(name = "track_automation", joinColumns = @JoinColumn(name = "track_id"))
+    @OrderBy("timeSec ASC")
+    private List<AutomationPoint> automation = new ArrayList<>();
+
     public TrackEntity() {}
 
     public TrackEntity(ProjectEntity project, String name, int order) {
@@ -48,4 +53,5 @@ public class TrackEntity {
     public ProjectEntity getProject() { return project; }
     public void setProject(ProjectEntity project) { this.project = project; }
     public List<SegmentEntity> getSegments() { return segments; }
+    public List<AutomationPoint> getAutomation() { return automation; }
 }
\ No newline at end of file
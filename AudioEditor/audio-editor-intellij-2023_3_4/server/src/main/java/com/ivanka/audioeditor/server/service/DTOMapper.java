@@ -4,6 +4,7 @@ import com.ivanka.audioeditor.common.dto.*;
 import com.ivanka.audioeditor.server.model.*;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
@@ -25,7 +26,8 @@ public class DTOMapper {
                 track.getTrackOrder(),
                 track.isMuted(),
                 track.getVolume(),
-                track.getSegments().stream().map(this::toSegmentDTO).collect(Collectors.toList())
+                track.getSegments().stream().map(this::toSegmentDTO).collect(Collectors.toList()),
+                toAutomationDTOs(track.getAutomation())
         );
     }
 
@@ -41,10 +43,23 @@ public class DTOMapper {
                 segment.getStartTimeSec(),
                 segment.getEndTimeSec(),
                 path,
-                name
+                name,
+                toAutomationDTOs(segment.getAutomation())
         );
     }
 
+    public List<AutomationPointDTO> toAutomationDTOs(List<AutomationPoint> points) {
+        return points.stream()
+                .map(p -> new AutomationPointDTO(p.getLane(), p.getTimeSec(), p.getValue(), p.isExponential()))
+                .collect(Collectors.toList());
+    }
+
+    public List<AutomationPoint> fromAutomationDTOs(List<AutomationPointDTO> points) {
+        return points.stream()
+                .map(p -> new AutomationPoint(p.lane(), p.timeSec(), p.value(), p.exponential()))
+                .collect(Collectors.toList());
+    }
+
     public ProjectResponse toProjectResponse(ProjectEntity project) {
         return new ProjectResponse(
                 project.getId(),
@@ -1,5 +1,6 @@
 package com.ivanka.audioeditor.server.web;
 
+import com.ivanka.audioeditor.common.dto.AutomationPointDTO;
 import com.ivanka.audioeditor.common.dto.SegmentDTO;
 import com.ivanka.audioeditor.server.model.*;
 import com.ivanka.audioeditor.server.repo.*;
@@ -12,6 +13,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -38,9 +40,12 @@ public class SegmentController {
         this.mapper = mapper;
     }
 
+    // startTime and endTime place the segment on its track, e.g. where a take was recorded; omitted they stay 0
     @PostMapping("/import/{trackId}")
     public SegmentDTO importAudio(@PathVariable Long trackId,
-                                  @RequestParam("file") MultipartFile file) throws IOException {
+                                  @RequestParam("file") MultipartFile file,
+                                  @RequestParam(value = "startTime", required = false) Double startTime,
+                                  @RequestParam(value = "endTime", required = false) Double endTime) throws IOException {
         TrackEntity track = tracks.findById(trackId)
                 .orElseThrow(() -> new RuntimeException("Track not found"));
 
@@ -55,8 +60,8 @@ public class SegmentController {
         SegmentEntity segment = new SegmentEntity();
         segment.setTrack(track);
         segment.setAudioFile(audioEntity);
-        segment.setStartTimeSec(0.0);
-        segment.setEndTimeSec(0.0);
+        segment.setStartTimeSec(startTime != null ? startTime : 0.0);
+        segment.setEndTimeSec(endTime != null ? endTime : 0.0);
 
         SegmentEntity savedSegment = segments.save(segment);
         return mapper.toSegmentDTO(savedSegment);
@@ -64,7 +69,9 @@ public class SegmentController {
 
     @PostMapping("/{id}/upload")
     public ResponseEntity<?> updateSegmentAudio(@PathVariable Long id,
-                                                @RequestParam("file") MultipartFile file) {
+                                                @RequestParam("file") MultipartFile file,
+                                                @RequestParam(value = "startTime", required = false) Double startTime,
+                                                @RequestParam(value = "endTime", required = false) Double endTime) {
         try {
             System.out.println("--- SAVE REQUEST for Segment " + id + " ---");
             SegmentEntity segment = segments.findById(id)
@@ -81,6 +88,8 @@ public class SegmentController {
             audio.setFilePath(savedFile.getAbsolutePath());
 
             audioFiles.save(audio);
+            if (startTime != null) segment.setStartTimeSec(startTime);
+            if (endTime != null) segment.setEndTimeSec(endTime);
             segments.save(segment);
 
             System.out.println("Database updated with new file: " + savedFile.getName());
@@ -91,6 +100,21 @@ public class SegmentController {
         }
     }
 
+    // Replaces the segment's gain automation; times are relative to the segment start
+    @PostMapping("/{id}/automation")
+    public ResponseEntity<?> saveAutomation(@PathVariable Long id,
+                                            @RequestBody List<AutomationPointDTO> points) {
+        String invalid = TrackController.validateAutomation(points, Set.of("gain"));
+        if (invalid != null) return ResponseEntity.badRequest().body(invalid);
+
+        SegmentEntity segment = segments.findById(id).orElse(null);
+        if (segment == null) return ResponseEntity.notFound().build();
+
+        segment.getAutomation().clear();
+        segment.getAutomation().addAll(mapper.fromAutomationDTOs(points));
+        return ResponseEntity.ok(mapper.toSegmentDTO(segments.save(segment)));
+    }
+
     @GetMapping("/by-track/{trackId}")
     public List<SegmentDTO> byTrack(@PathVariable Long trackId) {
         TrackEntity t = tracks.findById(trackId).orElseThrow();
@@ -1,5 +1,6 @@
 package com.ivanka.audioeditor.server.web;
 
+import com.ivanka.audioeditor.common.dto.AutomationPointDTO;
 import com.ivanka.audioeditor.common.dto.TrackDTO;
 import com.ivanka.audioeditor.server.model.ProjectEntity;
 import com.ivanka.audioeditor.server.model.TrackEntity;
@@ -43,6 +44,32 @@ public class TrackController {
         }
     }
 
+    // Replaces the track's gain and pan automation with the posted breakpoints
+    @PostMapping("/{trackId}/automation")
+    public ResponseEntity<?> saveAutomation(@PathVariable Long trackId,
+                                            @RequestBody List<AutomationPointDTO> points) {
+        String invalid = validateAutomation(points, Set.of("gain", "pan"));
+        if (invalid != null) return ResponseEntity.badRequest().body(invalid);
+
+        TrackEntity track = repo.findById(trackId).orElse(null);
+        if (track == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Track not found");
+
+        track.getAutomation().clear();
+        track.getAutomation().addAll(mapper.fromAutomationDTOs(points));
+        repo.save(track);
+        return ResponseEntity.ok(mapper.toTrackDTO(track));
+    }
+
+    static String validateAutomation(List<AutomationPointDTO> points, Set<String> lanes) {
+        if (points == null) return "Automation points are required";
+        for (AutomationPointDTO p : points) {
+            if (p.lane() == null || !lanes.contains(p.lane())) return "Unknown automation lane: " + p.lane();
+            if (!Double.isFinite(p.timeSec()) || p.timeSec() < 0) return "Invalid automation time: " + p.timeSec();
+            if (!Double.isFinite(p.value())) return "Invalid automation value: " + p.value();
+        }
+        return null;
+    }
+
     @DeleteMapping("/{trackId}")
     public void deleteTrack(@PathVariable Long trackId) {
         repo.deleteById(trackId);